@@ -0,0 +1,135 @@
+package analysis;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A minimal JMH-style runner: timed warmup iterations, then measured iterations
+ * reporting average time and bytes allocated per operation. Allocation is read
+ * from the HotSpot ThreadMXBean, the same source JMH's gc profiler uses.
+ */
+public class Benchmark {
+	/** Results go here so the JIT can't drop the work being measured */
+	public static volatile long sink;
+	
+	public interface Operation {
+		long run() throws Exception;
+	}
+	
+	public final String name;
+	public final String fixture;
+	private final Operation operation;
+	
+	public Benchmark(String name, String fixture, Operation operation){
+		this.name = name;
+		this.fixture = fixture;
+		this.operation = operation;
+	}
+	
+	public Result run(int warmupIterations, int measurementIterations, long iterationMillis) throws Exception {
+		for (int i = 0; i < warmupIterations; i++){
+			iteration(iterationMillis);
+		}
+		Result result = new Result(this);
+		for (int i = 0; i < measurementIterations; i++){
+			double[] iteration = iteration(iterationMillis);
+			result.nanosPerOp.add(iteration[0]);
+			result.bytesPerOp.add(iteration[1]);
+		}
+		return result;
+	}
+	
+	private double[] iteration(long iterationMillis) throws Exception {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		long deadline = System.nanoTime() + iterationMillis * 1000000;
+		long ops = 0;
+		long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		long now;
+		do {
+			sink += operation.run();
+			ops++;
+			now = System.nanoTime();
+		} while (now < deadline);
+		long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+		return new double[]{ (double) (now - start) / ops, (double) allocated / ops };
+	}
+	
+	public static class Result {
+		public final Benchmark benchmark;
+		public final List<Double> nanosPerOp = new ArrayList<Double>();
+		public final List<Double> bytesPerOp = new ArrayList<Double>();
+		
+		Result(Benchmark benchmark){
+			this.benchmark = benchmark;
+		}
+		
+		public double micros(){
+			return mean(nanosPerOp) / 1000;
+		}
+		
+		/**
+		 * Half-width of the 99.9% confidence interval, like JMH's score error
+		 */
+		public double microsError(){
+			if (nanosPerOp.size() < 2) return Double.NaN;
+			double mean = mean(nanosPerOp);
+			double variance = nanosPerOp.stream().mapToDouble(x -> (x - mean) * (x - mean)).sum() / (nanosPerOp.size() - 1);
+			return 3.29 * Math.sqrt(variance / nanosPerOp.size()) / 1000;
+		}
+		
+		public double bytes(){
+			return mean(bytesPerOp);
+		}
+		
+		private static double mean(List<Double> values){
+			return values.stream().mapToDouble(x -> x).average().orElse(Double.NaN);
+		}
+		
+		/**
+		 * One entry in the format JMH writes with -rf json, so existing tooling can read it
+		 */
+		public String toJson(int warmupIterations, long iterationMillis){
+			StringBuilder sb = new StringBuilder();
+			sb.append("  {\n");
+			sb.append("    \"benchmark\" : \"analysis.UnitBenchmarks.").append(benchmark.name).append("\",\n");
+			sb.append("    \"mode\" : \"avgt\",\n");
+			sb.append("    \"threads\" : 1,\n");
+			sb.append("    \"warmupIterations\" : ").append(warmupIterations).append(",\n");
+			sb.append("    \"warmupTime\" : \"").append(iterationMillis).append(" ms\",\n");
+			sb.append("    \"measurementIterations\" : ").append(nanosPerOp.size()).append(",\n");
+			sb.append("    \"measurementTime\" : \"").append(iterationMillis).append(" ms\",\n");
+			sb.append("    \"params\" : { \"fixture\" : \"").append(benchmark.fixture).append("\" },\n");
+			sb.append("    \"primaryMetric\" : {\n");
+			sb.append("      \"score\" : ").append(micros()).append(",\n");
+			sb.append("      \"scoreError\" : ").append(json(microsError())).append(",\n");
+			sb.append("      \"scoreUnit\" : \"us/op\",\n");
+			sb.append("      \"rawData\" : [ ").append(list(nanosPerOp, 1000)).append(" ]\n");
+			sb.append("    },\n");
+			sb.append("    \"secondaryMetrics\" : {\n");
+			sb.append("      \"gc.alloc.rate.norm\" : {\n");
+			sb.append("        \"score\" : ").append(bytes()).append(",\n");
+			sb.append("        \"scoreUnit\" : \"B/op\",\n");
+			sb.append("        \"rawData\" : [ ").append(list(bytesPerOp, 1)).append(" ]\n");
+			sb.append("      }\n");
+			sb.append("    }\n");
+			sb.append("  }");
+			return sb.toString();
+		}
+		
+		private static String list(List<Double> values, double divisor){
+			StringBuilder sb = new StringBuilder("[ ");
+			for (int i = 0; i < values.size(); i++){
+				if (i > 0) sb.append(", ");
+				sb.append(values.get(i) / divisor);
+			}
+			return sb.append(" ]").toString();
+		}
+		
+		private static String json(double value){
+			return Double.isNaN(value) ? "\"NaN\"" : Double.toString(value);
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package analysis;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Source files to benchmark against: the samples in data/ plus generated files
+ * far larger than anything in there, written out so the whole Unit pipeline can
+ * read them from disk.
+ */
+public class Fixture {
+	public final String name;
+	public final Path path;
+	public final String source;
+	
+	private Fixture(String name, Path path, String source){
+		this.name = name;
+		this.path = path;
+		this.source = source;
+	}
+	
+	public static List<Fixture> load(Path data, Path generated) throws IOException {
+		List<Fixture> fixtures = new ArrayList<Fixture>();
+		try (DirectoryStream<Path> samples = Files.newDirectoryStream(data, "*.txt")){
+			for (Path sample : samples){
+				String name = sample.getFileName().toString().replace(".txt", "");
+				fixtures.add(new Fixture(name, sample, new String(Files.readAllBytes(sample), StandardCharsets.UTF_8)));
+			}
+		}
+		fixtures.sort((a, b) -> a.name.compareTo(b.name));
+		fixtures.add(write(generated, "syntheticLarge", largeClass(500)));
+		fixtures.add(write(generated, "syntheticLongLines", longLines(200, 40)));
+		return fixtures;
+	}
+	
+	private static Fixture write(Path directory, String name, String source) throws IOException {
+		Path path = directory.resolve(name + ".java");
+		Files.write(path, source.getBytes(StandardCharsets.UTF_8));
+		return new Fixture(name, path, source);
+	}
+	
+	/**
+	 * A class with every construct the detectors look for, repeated: constructors
+	 * storing this and making down calls, forwarding methods and delegation.
+	 */
+	static String largeClass(int members){
+		StringBuilder sb = new StringBuilder();
+		sb.append("package synthetic;\n\nimport java.util.List;\n\n");
+		sb.append("public class Large extends Base implements Listener {\n");
+		for (int i = 0; i < members; i++){
+			sb.append("\tprivate int field").append(i).append(" = ").append(i).append(";\n");
+			sb.append("\tprivate List<String> names").append(i).append(";\n\n");
+			sb.append("\tpublic Large(int a, List<String> names) {\n");
+			sb.append("\t\tsuper(a);\n");
+			sb.append("\t\tthis.field").append(i).append(" = compute").append(i).append("(a);\n");
+			sb.append("\t\tthis.names").append(i).append(" = names;\n");
+			sb.append("\t\tRegistry.register(this);\n");
+			sb.append("\t}\n\n");
+			sb.append("\tint compute").append(i).append("(int x) {\n");
+			sb.append("\t\treturn delegate.inner.compute").append(i).append("(x);\n");
+			sb.append("\t}\n\n");
+			sb.append("\tvoid notify").append(i).append("() {\n");
+			sb.append("\t\tlistener.changed(this, field").append(i).append(");\n");
+			sb.append("\t\tif (field").append(i).append(" > 0) {\n");
+			sb.append("\t\t\tfield").append(i).append(" = (field").append(i).append(" * 31 + 7) % 1000;\n");
+			sb.append("\t\t}\n");
+			sb.append("\t}\n\n");
+			if (i % 50 == 0){
+				sb.append("\tstatic class Nested").append(i).append(" extends Large {\n");
+				sb.append("\t\tNested").append(i).append("() { super(").append(i).append(", null); reset(); }\n");
+				sb.append("\t}\n\n");
+			}
+		}
+		sb.append("}\n");
+		return sb.toString();
+	}
+	
+	/**
+	 * Whole methods on single long lines full of parentheses, the worst case for
+	 * the forwarding regex's .* groups.
+	 */
+	static String longLines(int methods, int depth){
+		StringBuilder sb = new StringBuilder("class LongLines {\n");
+		for (int i = 0; i < methods; i++){
+			sb.append("\tint m").append(i).append("(int a, int b) { return ");
+			for (int d = 0; d < depth; d++) sb.append("f(a, ");
+			sb.append("b");
+			for (int d = 0; d < depth; d++) sb.append(")");
+			sb.append(" + g(a) * h(b); }\n");
+		}
+		sb.append("}\n");
+		return sb.toString();
+	}
+}
@@ -0,0 +1,49 @@
+package analysis;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Checks that the token-only scan finds the same classes and superclasses as
+ * parsing, on the data/ fixtures and on any directories given as arguments.
+ * Prints each file where they disagree and exits with 1 if there were any.
+ */
+public class QuickStatsCheck {
+	public static void main(String[] args) throws Exception {
+		List<Path> files = new ArrayList<Path>();
+		for (Fixture fixture : Fixture.load(Paths.get("data"), Files.createTempDirectory("quick-stats-fixtures"))){
+			files.add(fixture.path);
+		}
+		for (String directory : args){
+			files.addAll(FileManifest.of(Paths.get(directory)).paths());
+		}
+		
+		ScanOptions parsed = new ScanOptions();
+		parsed.parse = ParseMode.FULL;
+		ScanOptions tokens = new ScanOptions();
+		tokens.parse = ParseMode.TOKENS;
+		tokens.metrics = EnumSet.of(Metric.CLASSES, Metric.EXTENDS, Metric.EXTENDED);
+		
+		int disagreements = 0;
+		for (Path file : files){
+			Unit expected = new Unit(file, parsed);
+			Unit actual = new Unit(file, tokens);
+			if (expected.classCount == actual.classCount
+					&& Objects.equals(expected.className, actual.className)
+					&& Objects.equals(expected.superClassName, actual.superClassName)) continue;
+			disagreements++;
+			System.out.println(file + ": parsed " + describe(expected) + ", tokens " + describe(actual));
+		}
+		System.out.println(disagreements + " of " + files.size() + " files disagree");
+		if (disagreements > 0) System.exit(1);
+	}
+	
+	private static String describe(Unit unit){
+		return unit.classCount + " classes, " + unit.className + " extends " + unit.superClassName;
+	}
+}
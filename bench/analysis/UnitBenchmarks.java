@@ -0,0 +1,115 @@
+package analysis;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import antlr.JavaBaseListener;
+import antlr.JavaLexer;
+import antlr.JavaParser.CompilationUnitContext;
+
+/**
+ * Benchmarks for each stage of scanning a file: reading and decoding, lexing,
+ * parsing, the token-only class scan, scanning the tree, the regex forwarding
+ * check, and the whole new Unit(path) pipeline. walk is a bare walk over the
+ * tree, the least any scan of it can cost.
+ *
+ * Options: --warmup N, --iterations N, --time MS (per iteration),
+ * --filter TEXT (only benchmarks whose name contains it), --json FILE.
+ */
+public class UnitBenchmarks {
+	public static void main(String[] args) throws Exception {
+		int warmup = 3;
+		int iterations = 5;
+		long time = 1000;
+		String filter = "";
+		String json = "output/benchmarks.json";
+		for (int i = 0; i < args.length; i++){
+			switch (args[i]){
+			case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+			case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+			case "--time": time = Long.parseLong(args[++i]); break;
+			case "--filter": filter = args[++i]; break;
+			case "--json": json = args[++i]; break;
+			default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+			}
+		}
+		
+		Path generated = Files.createTempDirectory("benchmark-fixtures");
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (Fixture fixture : Fixture.load(Paths.get("data"), generated)){
+			benchmarks.addAll(benchmarksFor(fixture));
+		}
+		
+		PrintStream out = System.out;
+		List<Benchmark.Result> results = new ArrayList<Benchmark.Result>();
+		out.println(String.format("%-16s %-20s %14s %12s %14s", "Benchmark", "Fixture", "us/op", "error", "B/op"));
+		for (Benchmark benchmark : benchmarks){
+			if (!benchmark.name.contains(filter)) continue;
+			Benchmark.Result result = benchmark.run(warmup, iterations, time);
+			results.add(result);
+			out.println(String.format("%-16s %-20s %14.3f %12.3f %14.0f",
+					benchmark.name, benchmark.fixture, result.micros(), result.microsError(), result.bytes()));
+		}
+		writeJson(Paths.get(json), results, warmup, time);
+		out.println("Results written to " + json);
+	}
+	
+	private static List<Benchmark> benchmarksFor(Fixture fixture){
+		CompilationUnitContext tree = Unit.parse(new ANTLRInputStream(fixture.source));
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.add(new Benchmark("read", fixture.name, () ->
+			SourceReader.read(fixture.path).size()
+		));
+		benchmarks.add(new Benchmark("lex", fixture.name, () -> {
+			CommonTokenStream tokens = new CommonTokenStream(new JavaLexer(new ANTLRInputStream(fixture.source)));
+			tokens.fill();
+			return tokens.size();
+		}));
+		benchmarks.add(new Benchmark("parse", fixture.name, () ->
+			Unit.parse(new ANTLRInputStream(fixture.source)).getChildCount()
+		));
+		benchmarks.add(new Benchmark("quickStats", fixture.name, () -> {
+			Unit unit = new Unit(fixture.path, true);
+			QuickStats.scan(ParserContext.get().lexer(new ANTLRInputStream(fixture.source)), unit);
+			return unit.classCount;
+		}));
+		benchmarks.add(new Benchmark("scan", fixture.name, () -> {
+			Unit unit = new Unit(fixture.path, true);
+			unit.scan(tree, ForwardingDetection.TREE);
+			return unit.classCount + unit.failureSet.failures.size() + unit.delegationStatements.size();
+		}));
+		benchmarks.add(new Benchmark("forwardingRegex", fixture.name, () ->
+			Unit.forwarding.matcher(fixture.source).find() ? 1 : 0
+		));
+		benchmarks.add(new Benchmark("walk", fixture.name, () -> {
+			ParseTreeWalker.DEFAULT.walk(new JavaBaseListener(), tree);
+			return tree.getChildCount();
+		}));
+		benchmarks.add(new Benchmark("unit", fixture.name, () ->
+			new Unit(fixture.path).classCount
+		));
+		return benchmarks;
+	}
+	
+	private static void writeJson(Path file, List<Benchmark.Result> results, int warmup, long time) throws Exception {
+		if (file.getParent() != null) Files.createDirectories(file.getParent());
+		try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))){
+			writer.println("[");
+			for (int i = 0; i < results.size(); i++){
+				writer.print(results.get(i).toJson(warmup, time));
+				writer.println(i + 1 < results.size() ? "," : "");
+			}
+			writer.println("]");
+		}
+	}
+}
@@ -2,43 +2,77 @@ package analysis;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Paths;
 
 public class Analysis {
 	public static void main(String[] args) throws IOException {
-		scanCorpus();
+		ScanOptions options = ScanOptions.fromArgs(args);
+		if (options.stream) streamCorpus(options);
+		else scanCorpus(options);
 //		scanTestFile();
 	}
 
-	private static void scanCorpus() {
+	private static void streamCorpus(ScanOptions options) {
 		long start = System.currentTimeMillis();
-		Corpus corpus = new Corpus("/Users/lukeinkster/Documents/QualitasCorpus-20130901r/Systems", 0, 100);
-		System.out.println("Found " + corpus.size() + " projects.");
-		
-		System.out.println(corpus.countFiles() + " - total files");
-		System.out.println(corpus.countClasses() + " - total classes");
-
-		System.out.println(corpus.countExtends() + " - classes extend another class");
-		System.out.println(corpus.countExtended() + " - classes are extended by another class");
-		System.out.println(corpus.countClassesWithForwarding() + " - classes with forwarding");
-		System.out.println(corpus.countClassesWithForwardingThatExtend() + " - classes with forwarding that extend");
-		
-		System.out.println(corpus.countClassesWithFailures() + " - classes with downcalls or storing this in constructor");
-		System.out.println(corpus.countClassesWithFailure(FailureType.DOWN_CALL) + " - classes with downcalls in constructors");
-		System.out.println(corpus.countClassesWithFailure(FailureType.STORING_THIS) + " - classes storing this in constructors");
-		System.out.println(corpus.countExtendedClassesWithFailure(FailureType.DOWN_CALL)
-				+ " - extended classes with downcalls in constructors");
-		System.out.println(corpus.countExtendedClassesWithFailure(FailureType.STORING_THIS)
-				+ " - extended classes storing this in constructors");
-		
-		System.out.println(corpus.countClassesWithDelegation() + " - classes with delegation");
+		CorpusStatistics statistics = Corpus.stream(options.corpus, options.start, options.end, options,
+			(project, totals) -> System.out.println("[" + totals.projects + "] " + project.root.getFileName()
+				+ " - so far " + totals.files + " files, " + totals.classes + " classes, "
+				+ totals.extendsClasses + " extend, " + totals.classesWithFailures + " with failures, "
+				+ totals.classesWithDelegation + " with delegation, " + DfaCache.states() + " DFA states"));
+		statistics.print(System.out, options.metrics);
+		printForwardingMismatches(options);
+		printSkeletonMismatches(options);
+		printParseFallbacks();
+		DfaCache.stats().print(System.out, 5);
+		ParserContext.profile().print(System.out, 10);
+		PhaseStats.corpus.print(System.out);
+		writeSlowFiles(options);
+		System.out.println("Took " + (System.currentTimeMillis() - start) + "ms");
+	}
+
+	private static void scanCorpus(ScanOptions options) {
+		long start = System.currentTimeMillis();
+		Corpus corpus = new Corpus(options.corpus, options.start, options.end, options);
+		corpus.statistics().print(System.out, options.metrics);
+		printForwardingMismatches(options);
+		printSkeletonMismatches(options);
+		printParseFallbacks();
+		DfaCache.stats().print(System.out, 5);
+		ParserContext.profile().print(System.out, 10);
+		PhaseStats.corpus.print(System.out);
 //		writeErrorsToFile(projects);
+		writeSlowFiles(options);
 		System.out.println("Took " + (System.currentTimeMillis() - start) + "ms");
 	}
 
+	private static void writeSlowFiles(ScanOptions options) {
+		if (options.slowFiles <= 0) return;
+		try {
+			SlowFiles.corpus.write(Paths.get(options.slowLog));
+			System.out.println("Slowest files written to " + options.slowLog);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static void printForwardingMismatches(ScanOptions options) {
+		if (options.forwarding != ForwardingDetection.COMPARE) return;
+		System.out.println(Unit.forwardingMismatches + " - files where tree and regex forwarding disagree");
+	}
+
+	private static void printSkeletonMismatches(ScanOptions options) {
+		if (options.parse != ParseMode.VERIFY) return;
+		System.out.println(Unit.skeletonMismatches + " - files where skeleton and full parse disagree");
+	}
+
+	private static void printParseFallbacks() {
+		System.out.println(ParserContext.llFallbacks + " of " + ParserContext.parses + " parses needed full LL prediction");
+	}
+
 	private static void scanTestFile() {
 		Project p = Project.from(new File("data/possiblyDelegating.txt"));
 		p.failures().forEach(failureSet -> System.out.println(failureSet));
-		p.units.get(0).delegationStatements.forEach(d -> System.out.println(d.getText()));
+		p.units.get(0).delegationStatements.forEach(d -> System.out.println(d.text));
 //		System.out.println(p.failures.size());
 //		System.out.println(p.failures.stream().flatMap(f -> f.failures.stream()).map(x -> x.text()).collect(Collectors.toList()));
 	}
@@ -0,0 +1,30 @@
+package analysis;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Null-safe strings of any length for the binary scan cache. DataOutput.writeUTF
+ * tops out at 64k, which a long enough constructor expression will exceed.
+ */
+class BinaryFormat {
+	static void writeString(DataOutput out, String s) throws IOException {
+		if (s == null){
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	static String readString(DataInput in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) return null;
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,68 @@
+package analysis;
+
+/**
+ * A wall clock budget for matching, lexing and parsing one file. The lexer and
+ * token streams of a {@link ParserContext}, and the text regexes are matched
+ * against, check it as they go and give up on a file that runs over, so a
+ * single pathological input can't stall a scan. Checking the clock only every
+ * so often keeps the cost per token negligible.
+ */
+final class Budget {
+	/** Thrown from inside the lexer or parser when the file has run over */
+	static final class Exceeded extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		
+		Exceeded(long millis){
+			super("Parsing took more than " + millis + "ms");
+		}
+	}
+	
+	private static final int checkEvery = 1024;
+	
+	private long millis;
+	private long deadline = Long.MAX_VALUE;
+	private int calls;
+	
+	/** Sets the budget for the next file, 0 for none, the clock only runs from {@link #start} */
+	void reset(long millis){
+		this.millis = millis;
+		this.deadline = Long.MAX_VALUE;
+		this.calls = 0;
+	}
+	
+	/** Starts the clock once the file has been read, so slow storage doesn't count against it */
+	void start(){
+		if (millis > 0) deadline = System.nanoTime() + millis * 1000000L;
+	}
+	
+	void check(){
+		if (++calls % checkEvery == 0 && System.nanoTime() > deadline) throw new Exceeded(millis);
+	}
+	
+	/** The same characters, checking the budget on every read, so a backtracking regex can be given up on too */
+	CharSequence checked(CharSequence chars){
+		if (millis <= 0) return chars;
+		return new CharSequence(){
+			@Override
+			public char charAt(int index) {
+				check();
+				return chars.charAt(index);
+			}
+			
+			@Override
+			public int length() {
+				return chars.length();
+			}
+			
+			@Override
+			public CharSequence subSequence(int start, int end) {
+				return chars.subSequence(start, end);
+			}
+			
+			@Override
+			public String toString() {
+				return chars.toString();
+			}
+		};
+	}
+}
@@ -0,0 +1,156 @@
+package analysis;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+/**
+ * A CharStream straight over the buffer a file was read into, so the lexer works
+ * on the only copy of the file's characters. ASCII and Latin-1 files aren't even
+ * decoded: each byte is read as the char with the same value.
+ *
+ * The buffers belong to {@link SourceReader}'s per-thread pool, so a stream is
+ * only good until its thread reads the next file. Token text is read lazily
+ * from the stream, so anything kept from a file has to be copied out first.
+ */
+abstract class BufferCharStream implements CharStream, CharSequence {
+	private final String sourceName;
+	private final int n;
+	private int p = 0;
+	
+	BufferCharStream(String sourceName, int n){
+		this.sourceName = sourceName;
+		this.n = n;
+	}
+	
+	static BufferCharStream of(String sourceName, CharBuffer chars){
+		return new Chars(sourceName, chars);
+	}
+	
+	static BufferCharStream of(String sourceName, ByteBuffer latin1){
+		return new Bytes(sourceName, latin1);
+	}
+	
+	@Override
+	public abstract char charAt(int index);
+	
+	abstract void copy(int start, char[] to, int count);
+	
+	@Override
+	public void consume() {
+		if (p >= n) throw new IllegalStateException("cannot consume EOF");
+		p++;
+	}
+	
+	@Override
+	public int LA(int i) {
+		if (i == 0) return 0;
+		if (i < 0){
+			i++;
+			if (p + i - 1 < 0) return IntStream.EOF;
+		}
+		if (p + i - 1 >= n) return IntStream.EOF;
+		return charAt(p + i - 1);
+	}
+	
+	@Override
+	public int mark() {
+		return -1;
+	}
+	
+	@Override
+	public void release(int marker) {
+	}
+	
+	@Override
+	public int index() {
+		return p;
+	}
+	
+	@Override
+	public void seek(int index) {
+		p = Math.min(index, n);
+	}
+	
+	@Override
+	public int size() {
+		return n;
+	}
+	
+	@Override
+	public String getSourceName() {
+		return sourceName;
+	}
+	
+	@Override
+	public String getText(Interval interval) {
+		int start = interval.a;
+		int stop = Math.min(interval.b, n - 1);
+		if (start >= n || stop < start) return "";
+		char[] text = new char[stop - start + 1];
+		copy(start, text, text.length);
+		return new String(text);
+	}
+	
+	@Override
+	public int length() {
+		return n;
+	}
+	
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return getText(Interval.of(start, end - 1));
+	}
+	
+	@Override
+	public String toString() {
+		return getText(Interval.of(0, n - 1));
+	}
+	
+	private static class Chars extends BufferCharStream {
+		private final CharBuffer chars;
+		
+		Chars(String sourceName, CharBuffer chars){
+			super(sourceName, chars.remaining());
+			this.chars = chars;
+		}
+		
+		@Override
+		public char charAt(int index) {
+			return chars.get(index);
+		}
+		
+		@Override
+		void copy(int start, char[] to, int count) {
+			CharBuffer source = chars.duplicate();
+			source.position(start);
+			source.get(to, 0, count);
+		}
+	}
+	
+	private static class Bytes extends BufferCharStream {
+		private final ByteBuffer bytes;
+		private final int offset;
+		
+		Bytes(String sourceName, ByteBuffer bytes){
+			super(sourceName, bytes.remaining());
+			this.bytes = bytes;
+			this.offset = bytes.position();
+		}
+		
+		@Override
+		public char charAt(int index) {
+			return (char) (bytes.get(offset + index) & 0xFF);
+		}
+		
+		@Override
+		void copy(int start, char[] to, int count) {
+			for (int i = 0; i < count; i++){
+				to[i] = (char) (bytes.get(offset + start + i) & 0xFF);
+			}
+		}
+	}
+}
@@ -1,127 +1,178 @@
 package analysis;
 
 import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class Corpus {
 	private List<Project> projects;
 	
 	public Corpus(String location, int start, int end){
-		System.out.println("ping");
-		List<Path> paths = Arrays
-			.stream(new File(location).listFiles())
-			.filter(file -> file.isDirectory())
-			.map(directory -> directory.toPath())
-			.filter(path -> containsJavaFiles(path)).skip(700).limit(100).collect(Collectors.toList());
-		System.out.println("pong");
-		projects = paths.stream()
-//			.parallel()
-			.map(path -> Project.from(path))
-			.filter(project -> project != null)
-			.collect(Collectors.toList());
+		this(location, start, end, new ScanOptions());
 	}
 	
-	public int size(){
-		return projects.size();
+	public Corpus(String location, int start, int end, ScanOptions options){
+		List<FileManifest> manifests = discover(location, start, end);
+		projects = new ArrayList<Project>();
+		scan(batches(manifests, options), options, (manifest, project) -> projects.add(project));
 	}
 	
-	public long countExtends(){
-		return projects
+	/**
+	 * All projects in one batch, so workers never wait for a project to finish,
+	 * unless the DFA cache is cleared after each project, which needs them scanned
+	 * one at a time
+	 */
+	private static List<List<FileManifest>> batches(List<FileManifest> manifests, ScanOptions options){
+		if (options.dfaCache != DfaCache.Policy.PROJECT) return Collections.singletonList(manifests);
+		return manifests
 			.stream()
-			.mapToLong(project -> project.extendsClassCount())
-			.sum();
+			.map(manifest -> Collections.singletonList(manifest))
+			.collect(Collectors.toList());
 	}
 	
-	public long countExtended(){
-		return projects
+	/**
+	 * Scans the corpus one project at a time, folding each project into the returned
+	 * statistics and dropping it before the next one is parsed, so memory use doesn't
+	 * grow with the size of the corpus. The files of each project are still scanned
+	 * in parallel. Progress is called with the running totals after every project.
+	 */
+	public static CorpusStatistics stream(String location, int start, int end, ScanOptions options,
+			BiConsumer<FileManifest, CorpusStatistics> progress){
+		CorpusStatistics statistics = new CorpusStatistics();
+		List<List<FileManifest>> batches = discover(location, start, end)
 			.stream()
-			.mapToLong(project -> project.extendedClassCount())
-			.sum();
-	}
-
-	public int countFiles() {
-		return projects
-			.stream()
-			.mapToInt(project -> project.units.size())
-			.sum();
-	}
-
-	public int countClasses() {
-		return projects
-			.stream()
-			.flatMap(project -> project.units.stream())
-			.mapToInt(unit -> unit.classCount)
-			.sum();
-	}
-
-	public long countClassesWithFailures() {
-		return projects
-			.stream()
-			.mapToLong(project -> project.failures().filter(failure -> !failure.failures.isEmpty()).count())
-			.sum();
+			.map(manifest -> Collections.singletonList(manifest))
+			.collect(Collectors.toList());
+		scan(batches, options, (manifest, project) -> {
+			statistics.add(project);
+			progress.accept(manifest, statistics);
+		});
+		return statistics;
 	}
 	
-	public List<FailureSet> failures(){
-		return projects
-			.stream()
-			.flatMap(project -> project.failures())
-			.collect(Collectors.toList());
+	private static void scan(List<List<FileManifest>> batches, ScanOptions options, BiConsumer<FileManifest, Project> consumer){
+		ScanManifest scanManifest = options.incremental ? ScanManifest.load(Paths.get(options.manifest), options) : null;
+		Function<FileManifest.Entry, Unit> parser = scanManifest == null ? file -> new Unit(file.path, options) : scanManifest::scan;
+		Quarantine quarantine = Quarantine.load(Paths.get(options.quarantine));
+		Progress progress = new Progress(batches.stream().flatMap(List::stream).collect(Collectors.toList()), System.out);
+		Function<FileManifest.Entry, Unit> scanner = file -> {
+			if (options.verbose) System.out.println(file.path);
+			long started = System.nanoTime();
+			Unit unit = quarantine.contains(file)
+					? new Unit(file.path, false)
+					: quarantine.check(file, parser.apply(file));
+			SlowFiles.corpus.add(file, unit, System.nanoTime() - started);
+			DfaCache.afterFile(options);
+			progress.fileDone(file.size);
+			return unit;
+		};
+		PhaseTimer.enabled = options.phases;
+		ParserContext.profiling = options.profile;
+		SlowFiles.corpus.limit(options.slowFiles);
+		ScanEngine engine = new ScanEngine(options.parallelism);
+		progress.start(options.progressMillis);
+		try {
+			for (List<FileManifest> batch : batches){
+				ScanEvents.ProjectScan[] events = new ScanEvents.ProjectScan[batch.size()];
+				for (int i = 0; i < batch.size(); i++){
+					events[i] = new ScanEvents.ProjectScan();
+					events[i].begin();
+				}
+				List<List<Unit>> units = engine.scan(batch, scanner);
+				for (int i = 0; i < batch.size(); i++){
+					if (options.phases) timePhases(batch.get(i), units.get(i));
+					Project project = Project.from(units.get(i));
+					consumer.accept(batch.get(i), project);
+					events[i].end(batch.get(i), project);
+					DfaCache.afterProject(options);
+					progress.projectDone();
+				}
+			}
+		} finally {
+			progress.stop();
+			engine.shutdown();
+		}
+		if (scanManifest != null) saveManifest(scanManifest, Paths.get(options.manifest));
+		saveQuarantine(quarantine, options);
 	}
-
-	public long countClassesWithFailure(FailureType failureType) {
-		return failures()
-			.stream()
-			.filter(failureSet -> failureSet
-				.failures
-				.stream()
-				.anyMatch(x -> x.failureType == failureType))
-			.count();
+	
+	private static void timePhases(FileManifest manifest, List<Unit> units){
+		PhaseStats project = new PhaseStats();
+		for (Unit unit : units) project.add(unit.phaseTimes);
+		PhaseStats.corpus.add(project);
+		System.out.println(manifest.root.getFileName() + " phases - " + project.summary());
 	}
-
-	public long countExtendedClassesWithFailure(FailureType failureType) {
-		return projects
-			.stream()
-			.mapToLong(project -> project.countExtendedClassesWithFailure(failureType))
-			.sum();
+	
+	private static void saveQuarantine(Quarantine quarantine, ScanOptions options){
+		if (quarantine.size() > 0){
+			System.out.println(quarantine.size() + " files quarantined in " + options.quarantine
+					+ ", " + quarantine.added().size() + " new this scan");
+		}
+		for (Path path : quarantine.added()){
+			System.out.println("  over " + options.budgetMillis + "ms: " + path);
+		}
+		if (!quarantine.modified()) return;
+		try {
+			quarantine.save(Paths.get(options.quarantine));
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
 	}
 	
-	private Stream<Unit> classesWithForwarding(){
-		return projects.stream().flatMap(p -> p.units.stream()).filter(u -> u.hasForwarding);
+	private static void saveManifest(ScanManifest scanManifest, Path file){
+		System.out.println(scanManifest.reused + " files unchanged, " + scanManifest.parsed + " parsed");
+		try {
+			scanManifest.save(file);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
 	}
 	
-	public long countClassesWithForwarding(){
-		return classesWithForwarding().count();
+	/**
+	 * Finds the projects numbered [start, end) among the directories that contain
+	 * java files. Every directory is walked once: the ones before start only need
+	 * the existence check, which stops at the first .java file.
+	 */
+	private static List<FileManifest> discover(String location, int start, int end){
+		File[] directories = new File(location).listFiles(file -> file.isDirectory());
+		Arrays.sort(directories);
+		List<FileManifest> manifests = new ArrayList<FileManifest>();
+		int found = 0;
+		for (File directory : directories){
+			if (found >= end) break;
+			if (found < start){
+				if (FileManifest.containsJavaFiles(directory.toPath())) found++;
+				continue;
+			}
+			FileManifest manifest = FileManifest.of(directory.toPath());
+			if (manifest.isEmpty()) continue;
+			manifests.add(manifest);
+			found++;
+		}
+		return manifests;
 	}
 	
-	public long countClassesWithForwardingThatExtend(){
-		return classesWithForwarding().filter(c -> c.superClassName != null).count();
+	public int size(){
+		return projects.size();
 	}
 	
-	public long countClassesWithDelegation(){
+	public CorpusStatistics statistics(){
 		return projects
-			.stream()
-			.flatMap(project -> project.units.stream())
-			.filter(unit -> !unit.delegationStatements.isEmpty())
-			.count();
+			.parallelStream()
+			.collect(CorpusStatistics.collector());
 	}
 	
-	private static boolean containsJavaFiles(Path path) {
-		try {
-			Stream<Path> files = Files.walk(path);
-			long found = files
-				.filter(f -> f.toString().endsWith(".java"))
-				.count();
-			files.close();
-//			System.out.println(found);
-			return found > 0;
-		} catch (IOException e) {
-			return false;
-		}
+	public List<FailureSet> failures(){
+		return projects
+			.stream()
+			.flatMap(project -> project.failures())
+			.collect(Collectors.toList());
 	}
 }
@@ -0,0 +1,133 @@
+package analysis;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collector;
+
+/**
+ * Every count Analysis reports, gathered in one pass over the units of each
+ * project. Projects can be folded in as they finish and statistics from separate
+ * threads combined, see {@link #collector()}.
+ */
+public class CorpusStatistics {
+	public int projects = 0;
+	public long files = 0;
+	public long classes = 0;
+	public long extendsClasses = 0;
+	public long extendedClasses = 0;
+	public long classesWithForwarding = 0;
+	public long classesWithForwardingThatExtend = 0;
+	public long classesWithFailures = 0;
+	public long classesWithDelegation = 0;
+	private final long[] classesWithFailure = new long[FailureType.values().length];
+	private final long[] extendedClassesWithFailure = new long[FailureType.values().length];
+	
+	public static Collector<Project, CorpusStatistics, CorpusStatistics> collector(){
+		return Collector.of(CorpusStatistics::new, CorpusStatistics::add, CorpusStatistics::combine);
+	}
+	
+	public void add(Project project){
+		projects++;
+		Set<String> superClasses = new HashSet<String>();
+		List<Pair<String, Integer>> failingClasses = new ArrayList<Pair<String, Integer>>();
+		for (Unit unit : project.units){
+			files++;
+			classes += unit.classCount;
+			superClasses.add(unit.superClassName);
+			if (unit.superClassName != null) extendsClasses++;
+			if (unit.hasForwarding){
+				classesWithForwarding++;
+				if (unit.superClassName != null) classesWithForwardingThatExtend++;
+			}
+			if (!unit.delegationStatements.isEmpty()) classesWithDelegation++;
+			if (unit.failureSet.failures.isEmpty()) continue;
+			
+			classesWithFailures++;
+			int failureTypes = 0;
+			for (Failure failure : unit.failureSet.failures){
+				failureTypes |= 1 << failure.failureType.ordinal();
+			}
+			for (FailureType failureType : FailureType.values()){
+				if ((failureTypes & 1 << failureType.ordinal()) != 0) classesWithFailure[failureType.ordinal()]++;
+			}
+			failingClasses.add(Pair.createPair(unit.className, failureTypes));
+		}
+		extendedClasses += superClasses.size();
+		
+		// Only known to be extended once every unit of the project has been seen
+		for (Pair<String, Integer> failingClass : failingClasses){
+			if (!superClasses.contains(failingClass.first())) continue;
+			for (FailureType failureType : FailureType.values()){
+				if ((failingClass.second() & 1 << failureType.ordinal()) != 0) extendedClassesWithFailure[failureType.ordinal()]++;
+			}
+		}
+	}
+	
+	public CorpusStatistics combine(CorpusStatistics other){
+		projects += other.projects;
+		files += other.files;
+		classes += other.classes;
+		extendsClasses += other.extendsClasses;
+		extendedClasses += other.extendedClasses;
+		classesWithForwarding += other.classesWithForwarding;
+		classesWithForwardingThatExtend += other.classesWithForwardingThatExtend;
+		classesWithFailures += other.classesWithFailures;
+		classesWithDelegation += other.classesWithDelegation;
+		for (int i = 0; i < classesWithFailure.length; i++){
+			classesWithFailure[i] += other.classesWithFailure[i];
+			extendedClassesWithFailure[i] += other.extendedClassesWithFailure[i];
+		}
+		return this;
+	}
+	
+	public long classesWithFailure(FailureType failureType){
+		return classesWithFailure[failureType.ordinal()];
+	}
+	
+	public long extendedClassesWithFailure(FailureType failureType){
+		return extendedClassesWithFailure[failureType.ordinal()];
+	}
+	
+	public void print(PrintStream out){
+		print(out, EnumSet.allOf(Metric.class));
+	}
+	
+	/** Prints only the given metrics, the others may not have been scanned for */
+	public void print(PrintStream out, Set<Metric> metrics){
+		if (metrics.contains(Metric.PROJECTS)) out.println("Found " + projects + " projects.");
+		
+		if (metrics.contains(Metric.FILES)) out.println(files + " - total files");
+		if (metrics.contains(Metric.CLASSES)) out.println(classes + " - total classes");
+
+		if (metrics.contains(Metric.EXTENDS)) out.println(extendsClasses + " - classes extend another class");
+		if (metrics.contains(Metric.EXTENDED)) out.println(extendedClasses + " - classes are extended by another class");
+		if (metrics.contains(Metric.FORWARDING)) out.println(classesWithForwarding + " - classes with forwarding");
+		if (metrics.contains(Metric.FORWARDING_EXTENDS)){
+			out.println(classesWithForwardingThatExtend + " - classes with forwarding that extend");
+		}
+		
+		if (metrics.contains(Metric.FAILURES)){
+			out.println(classesWithFailures + " - classes with downcalls or storing this in constructor");
+		}
+		if (metrics.contains(Metric.DOWNCALLS)){
+			out.println(classesWithFailure(FailureType.DOWN_CALL) + " - classes with downcalls in constructors");
+		}
+		if (metrics.contains(Metric.STORING_THIS)){
+			out.println(classesWithFailure(FailureType.STORING_THIS) + " - classes storing this in constructors");
+		}
+		if (metrics.contains(Metric.EXTENDED_DOWNCALLS)){
+			out.println(extendedClassesWithFailure(FailureType.DOWN_CALL)
+					+ " - extended classes with downcalls in constructors");
+		}
+		if (metrics.contains(Metric.EXTENDED_STORING_THIS)){
+			out.println(extendedClassesWithFailure(FailureType.STORING_THIS)
+					+ " - extended classes storing this in constructors");
+		}
+		
+		if (metrics.contains(Metric.DELEGATION)) out.println(classesWithDelegation + " - classes with delegation");
+	}
+}
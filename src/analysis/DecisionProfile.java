@@ -0,0 +1,99 @@
+package analysis;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.antlr.v4.runtime.atn.DecisionInfo;
+
+import antlr.JavaParser;
+
+/**
+ * What ANTLR's profiling simulator saw of each prediction decision, added up
+ * over many parses. Only the counts are kept, so the lookahead events and
+ * ambiguity reports it records per parse can be dropped as soon as they are
+ * added. Gathered by {@link ParserContext} when profiling is on.
+ */
+class DecisionProfile {
+	private static final int decisionCount = JavaParser._ATN.getNumberOfDecisions();
+	
+	final long[] invocations = new long[decisionCount];
+	final long[] nanos = new long[decisionCount];
+	final long[] sllLook = new long[decisionCount];
+	final long[] sllMaxLook = new long[decisionCount];
+	final long[] llFallbacks = new long[decisionCount];
+	final long[] llLook = new long[decisionCount];
+	final long[] llMaxLook = new long[decisionCount];
+	final long[] ambiguities = new long[decisionCount];
+	final long[] contextSensitivities = new long[decisionCount];
+	final long[] errors = new long[decisionCount];
+	
+	void add(DecisionInfo[] decisions){
+		for (DecisionInfo info : decisions){
+			int d = info.decision;
+			invocations[d] += info.invocations;
+			nanos[d] += info.timeInPrediction;
+			sllLook[d] += info.SLL_TotalLook;
+			sllMaxLook[d] = Math.max(sllMaxLook[d], info.SLL_MaxLook);
+			llFallbacks[d] += info.LL_Fallback;
+			llLook[d] += info.LL_TotalLook;
+			llMaxLook[d] = Math.max(llMaxLook[d], info.LL_MaxLook);
+			ambiguities[d] += info.ambiguities.size();
+			contextSensitivities[d] += info.contextSensitivities.size();
+			errors[d] += info.errors.size();
+		}
+	}
+	
+	void add(DecisionProfile other){
+		for (int d = 0; d < decisionCount; d++){
+			invocations[d] += other.invocations[d];
+			nanos[d] += other.nanos[d];
+			sllLook[d] += other.sllLook[d];
+			sllMaxLook[d] = Math.max(sllMaxLook[d], other.sllMaxLook[d]);
+			llFallbacks[d] += other.llFallbacks[d];
+			llLook[d] += other.llLook[d];
+			llMaxLook[d] = Math.max(llMaxLook[d], other.llMaxLook[d]);
+			ambiguities[d] += other.ambiguities[d];
+			contextSensitivities[d] += other.contextSensitivities[d];
+			errors[d] += other.errors[d];
+		}
+	}
+	
+	/**
+	 * Prints the totals, the decisions prediction spent longest in and the ones
+	 * that fell back to full LL prediction most. Fallbacks only happen in the
+	 * second, LL pass over an input, see {@link ParserContext#parse(org.antlr.v4.runtime.CharStream)}
+	 */
+	void print(PrintStream out, int top){
+		long total = Arrays.stream(invocations).sum();
+		if (total == 0) return;
+		out.println("Decision profile - " + total + " predictions, " + Arrays.stream(nanos).sum() / 1000000
+			+ "ms predicting, " + Arrays.stream(llFallbacks).sum() + " LL fallbacks, "
+			+ Arrays.stream(ambiguities).sum() + " ambiguities");
+		out.println(" slowest decisions:");
+		printTop(out, top, nanos);
+		if (Arrays.stream(llFallbacks).sum() == 0) return;
+		out.println(" most LL fallbacks:");
+		printTop(out, top, llFallbacks);
+	}
+	
+	private void printTop(PrintStream out, int top, long[] by){
+		Integer[] decisions = new Integer[decisionCount];
+		for (int d = 0; d < decisionCount; d++) decisions[d] = d;
+		Arrays.sort(decisions, Comparator.comparingLong((Integer d) -> by[d]).reversed());
+		for (int i = 0; i < Math.min(top, decisionCount) && by[decisions[i]] > 0; i++){
+			out.println("  " + describe(decisions[i]));
+		}
+	}
+	
+	private String describe(int d){
+		return "decision " + d + " (" + DfaCache.ruleOf(d) + ") - " + nanos[d] / 1000000 + "ms, "
+			+ invocations[d] + " predictions, SLL lookahead " + average(sllLook[d], invocations[d]) + " avg " + sllMaxLook[d] + " max, "
+			+ llFallbacks[d] + " LL fallbacks, LL lookahead " + average(llLook[d], llFallbacks[d]) + " avg " + llMaxLook[d] + " max, "
+			+ ambiguities[d] + " ambiguities, " + contextSensitivities[d] + " context sensitive, " + errors[d] + " errors";
+	}
+	
+	private static String average(long sum, long count){
+		return count == 0 ? "0" : String.format("%.1f", (double) sum / count);
+	}
+}
@@ -0,0 +1,53 @@
+package analysis;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Objects;
+
+import antlr.JavaParser.ExpressionContext;
+
+/**
+ * A method statement that passes this to a method on another object
+ */
+public class Delegation {
+	public final String text;
+	public final int line;
+	public final int column;
+	
+	public Delegation(ExpressionContext expr){
+		this(expr.getText(), expr.getStart().getLine(), expr.getStart().getCharPositionInLine());
+	}
+	
+	public Delegation(String text, int line, int column){
+		this.text = text;
+		this.line = line;
+		this.column = column;
+	}
+	
+	public void write(DataOutput out) throws IOException {
+		BinaryFormat.writeString(out, text);
+		out.writeInt(line);
+		out.writeInt(column);
+	}
+	
+	public static Delegation read(DataInput in) throws IOException {
+		return new Delegation(BinaryFormat.readString(in), in.readInt(), in.readInt());
+	}
+	
+	public String toString(){
+		return text;
+	}
+	
+	@Override
+	public boolean equals(Object o){
+		if (!(o instanceof Delegation)) return false;
+		Delegation other = (Delegation) o;
+		return text.equals(other.text) && line == other.line && column == other.column;
+	}
+	
+	@Override
+	public int hashCode(){
+		return Objects.hash(text, line, column);
+	}
+}
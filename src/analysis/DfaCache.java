@@ -0,0 +1,149 @@
+package analysis;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+
+import antlr.JavaParser;
+
+/**
+ * The prediction DFA shared by every parser. The generated parser keeps its DFA
+ * in static fields that only ever grow, so instead every {@link ParserContext}
+ * parses against the current generation held here. Clearing starts a new, empty
+ * generation: parsers pick it up at their next file and the old one is dropped
+ * once the last file parsed against it is done.
+ */
+class DfaCache {
+	/** When to throw the warm prediction state away, checked after every project */
+	enum Policy {
+		/** Never clear, fastest but grows for as long as the scan runs */
+		KEEP,
+		/** Clear after every project */
+		PROJECT,
+		/** Clear as soon as a file leaves more than {@link ScanOptions#dfaStateCap} states */
+		CAP
+	}
+	
+	/** Rough sizes on a 64-bit JVM with compressed references, only used for the estimate */
+	private static final int stateBytes = 48;
+	private static final int configSetBytes = 64;
+	private static final int configBytes = 40;
+	private static final int contextBytes = 32;
+	
+	static final class Generation {
+		final DFA[] decisionToDFA;
+		final PredictionContextCache contexts = new PredictionContextCache();
+		
+		private Generation(ATN atn){
+			decisionToDFA = new DFA[atn.getNumberOfDecisions()];
+			for (int i = 0; i < decisionToDFA.length; i++){
+				decisionToDFA[i] = new DFA(atn.getDecisionState(i), i);
+			}
+		}
+	}
+	
+	private static volatile Generation current = new Generation(JavaParser._ATN);
+	static final AtomicInteger clears = new AtomicInteger();
+	
+	static Generation current(){
+		return current;
+	}
+	
+	static void clear(){
+		current = new Generation(JavaParser._ATN);
+		clears.incrementAndGet();
+	}
+	
+	/** Applies the policy once a project has been scanned, see {@link Corpus} for how projects are batched */
+	static void afterProject(ScanOptions options){
+		if (options.dfaCache == Policy.PROJECT) clear();
+	}
+	
+	/**
+	 * Applies the cap once a file has been parsed, from whichever worker parsed it.
+	 * Files still being parsed finish on the old generation.
+	 */
+	static void afterFile(ScanOptions options){
+		if (options.dfaCache != Policy.CAP || states() <= options.dfaStateCap) return;
+		synchronized (DfaCache.class){
+			// Another worker may have cleared it while this one waited
+			if (states() > options.dfaStateCap) clear();
+		}
+	}
+	
+	/** The number of states in the current generation, cheaper than {@link #stats()} */
+	static long states(){
+		long states = 0;
+		for (DFA dfa : current.decisionToDFA){
+			synchronized (dfa.states){
+				states += dfa.states.size();
+			}
+		}
+		return states;
+	}
+	
+	/** The grammar rule a prediction decision belongs to */
+	static String ruleOf(int decision){
+		ATN atn = JavaParser._ATN;
+		return JavaParser.ruleNames[atn.getDecisionState(decision).ruleIndex];
+	}
+	
+	static Stats stats(){
+		return new Stats(current);
+	}
+	
+	/** A snapshot of the size of one generation */
+	static final class Stats {
+		final int[] statesPerDecision;
+		final long states;
+		final long contexts;
+		final long estimatedBytes;
+		
+		private Stats(Generation generation){
+			statesPerDecision = new int[generation.decisionToDFA.length];
+			long states = 0;
+			long bytes = 0;
+			for (int i = 0; i < statesPerDecision.length; i++){
+				DFA dfa = generation.decisionToDFA[i];
+				// Parsers add states under this lock, so the walk sees a consistent map
+				synchronized (dfa.states){
+					statesPerDecision[i] = dfa.states.size();
+					for (DFAState state : dfa.states.values()){
+						bytes += estimate(state);
+					}
+				}
+				states += statesPerDecision[i];
+			}
+			this.states = states;
+			this.contexts = generation.contexts.size();
+			this.estimatedBytes = bytes + contexts * contextBytes;
+		}
+		
+		private static long estimate(DFAState state){
+			long bytes = stateBytes;
+			DFAState[] edges = state.edges;
+			if (edges != null) bytes += 16 + 4L * edges.length;
+			if (state.configs != null) bytes += configSetBytes + (long)configBytes * state.configs.size();
+			return bytes;
+		}
+		
+		/** Prints the totals and the decisions with the most states */
+		void print(PrintStream out, int top){
+			out.println(states + " DFA states in " + Arrays.stream(statesPerDecision).filter(n -> n > 0).count()
+				+ " decisions, " + contexts + " cached contexts, ~" + (estimatedBytes >> 10) + "KB, cleared "
+				+ clears + " times");
+			Integer[] decisions = new Integer[statesPerDecision.length];
+			for (int i = 0; i < decisions.length; i++) decisions[i] = i;
+			Arrays.sort(decisions, (a, b) -> Integer.compare(statesPerDecision[b], statesPerDecision[a]));
+			for (int i = 0; i < Math.min(top, decisions.length) && statesPerDecision[decisions[i]] > 0; i++){
+				int decision = decisions[i];
+				out.println("  decision " + decision + " (" + ruleOf(decision) + ") - " + statesPerDecision[decision] + " states");
+			}
+		}
+	}
+}
@@ -1,17 +1,57 @@
 package analysis;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Objects;
+
 import antlr.JavaParser.ExpressionContext;
 
+/**
+ * A constructor expression that leaks this or makes a down call. Only its text
+ * and position are kept, so the parse tree can be collected once the file is done.
+ */
 public class Failure {
-	public final ExpressionContext expr;
+	public final String text;
 	public final FailureType failureType;
+	public final int line;
+	public final int column;
 	
 	public Failure(ExpressionContext expr, FailureType failureType){
-		this.expr = expr;
+		this(expr.getText(), failureType, expr.getStart().getLine(), expr.getStart().getCharPositionInLine());
+	}
+	
+	public Failure(String text, FailureType failureType, int line, int column){
+		this.text = text;
 		this.failureType = failureType;
+		this.line = line;
+		this.column = column;
 	}
 
 	public String text() {
-		return expr.getText();
+		return text;
+	}
+	
+	public void write(DataOutput out) throws IOException {
+		BinaryFormat.writeString(out, text);
+		out.writeByte(failureType.ordinal());
+		out.writeInt(line);
+		out.writeInt(column);
+	}
+	
+	public static Failure read(DataInput in) throws IOException {
+		return new Failure(BinaryFormat.readString(in), FailureType.values()[in.readByte()], in.readInt(), in.readInt());
+	}
+	
+	@Override
+	public boolean equals(Object o){
+		if (!(o instanceof Failure)) return false;
+		Failure other = (Failure) o;
+		return text.equals(other.text) && failureType == other.failureType && line == other.line && column == other.column;
+	}
+	
+	@Override
+	public int hashCode(){
+		return Objects.hash(text, failureType, line, column);
 	}
 }
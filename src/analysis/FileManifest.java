@@ -0,0 +1,103 @@
+package analysis;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The .java files under a project directory, found with a single walk of the
+ * tree. Size and modification time come for free with the walk so they are
+ * kept alongside each path.
+ */
+public class FileManifest {
+	public final Path root;
+	public final List<Entry> files;
+	
+	private FileManifest(Path root, List<Entry> files){
+		this.root = root;
+		this.files = files;
+	}
+	
+	public static FileManifest of(Path root){
+		List<Entry> files = new ArrayList<Entry>();
+		walk(root, new JavaFileVisitor(){
+			@Override
+			FileVisitResult visitJavaFile(Path file, BasicFileAttributes attrs) {
+				files.add(new Entry(file, attrs.size(), attrs.lastModifiedTime().toMillis()));
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return new FileManifest(root, files);
+	}
+	
+	/**
+	 * Stops walking at the first .java file, for directories we only need to count
+	 */
+	public static boolean containsJavaFiles(Path root){
+		boolean[] found = {false};
+		walk(root, new JavaFileVisitor(){
+			@Override
+			FileVisitResult visitJavaFile(Path file, BasicFileAttributes attrs) {
+				found[0] = true;
+				return FileVisitResult.TERMINATE;
+			}
+		});
+		return found[0];
+	}
+	
+	public List<Path> paths(){
+		return files
+			.stream()
+			.map(entry -> entry.path)
+			.collect(Collectors.toList());
+	}
+	
+	public int size(){
+		return files.size();
+	}
+	
+	public boolean isEmpty(){
+		return files.isEmpty();
+	}
+	
+	private static void walk(Path root, JavaFileVisitor visitor){
+		try {
+			Files.walkFileTree(root, visitor);
+		} catch (IOException e) {
+			// Nothing to find under an unreadable root
+		}
+	}
+	
+	private static abstract class JavaFileVisitor extends SimpleFileVisitor<Path> {
+		abstract FileVisitResult visitJavaFile(Path file, BasicFileAttributes attrs);
+		
+		@Override
+		public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+			if (!attrs.isRegularFile() || !file.toString().endsWith(".java")) return FileVisitResult.CONTINUE;
+			return visitJavaFile(file, attrs);
+		}
+		
+		@Override
+		public FileVisitResult visitFileFailed(Path file, IOException e) {
+			return FileVisitResult.CONTINUE;
+		}
+	}
+	
+	public static class Entry {
+		public final Path path;
+		public final long size;
+		public final long lastModified;
+		
+		public Entry(Path path, long size, long lastModified){
+			this.path = path;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+	}
+}
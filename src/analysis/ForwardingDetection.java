@@ -0,0 +1,11 @@
+package analysis;
+
+/**
+ * How Unit decides whether a file has forwarding methods. TREE looks for method
+ * bodies that are a single return of a call to the same name on another object,
+ * REGEX runs the original whole-file pattern, COMPARE runs both, reports files
+ * where they disagree and keeps the TREE answer.
+ */
+public enum ForwardingDetection {
+	TREE, REGEX, COMPARE
+}
@@ -0,0 +1,36 @@
+package analysis;
+
+/**
+ * The numbers Analysis can report, each with the parts of a file scan it needs
+ * beyond parsing the class headers. Named on the command line in lower case with
+ * dashes, e.g. --metrics extends,downcalls.
+ */
+public enum Metric {
+	PROJECTS(false, false, false),
+	FILES(false, false, false),
+	CLASSES(false, false, false),
+	EXTENDS(false, false, false),
+	EXTENDED(false, false, false),
+	FORWARDING(true, false, false),
+	FORWARDING_EXTENDS(true, false, false),
+	FAILURES(false, true, false),
+	DOWNCALLS(false, true, false),
+	STORING_THIS(false, true, false),
+	EXTENDED_DOWNCALLS(false, true, false),
+	EXTENDED_STORING_THIS(false, true, false),
+	DELEGATION(false, false, true);
+	
+	final boolean needsForwarding;
+	final boolean needsConstructors;
+	final boolean needsMethodBodies;
+	
+	private Metric(boolean needsForwarding, boolean needsConstructors, boolean needsMethodBodies){
+		this.needsForwarding = needsForwarding;
+		this.needsConstructors = needsConstructors;
+		this.needsMethodBodies = needsMethodBodies;
+	}
+	
+	public static Metric fromName(String name){
+		return valueOf(name.trim().replace('-', '_').toUpperCase());
+	}
+}
@@ -0,0 +1,18 @@
+package analysis;
+
+/**
+ * How much of a file Unit parses up front. FULL parses the whole file, SKELETON
+ * parses it with method and constructor bodies emptied and parses each body on
+ * its own when the scan gets to it, VERIFY does both, reports files where the
+ * results differ and keeps the FULL answer. TOKENS doesn't parse at all and only
+ * finds classes and their superclasses, see {@link QuickStats}.
+ *
+ * They all give the same results on files the grammar parses. On files it can't,
+ * the full parse has whatever error recovery made of them, while a skeleton whose
+ * broken bodies are never needed, or the tokens, go by the rest of the file. That
+ * changes every metric, not only the class counts, so FULL is the default and the
+ * others have to be asked for.
+ */
+public enum ParseMode {
+	FULL, SKELETON, VERIFY, TOKENS
+}
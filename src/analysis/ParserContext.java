@@ -0,0 +1,214 @@
+package analysis;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.atn.ProfilingATNSimulator;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import antlr.JavaLexer;
+import antlr.JavaParser;
+import antlr.JavaParser.CompilationUnitContext;
+
+/**
+ * The lexer, token stream and parser of one worker thread. They are built once,
+ * along with both error strategies, and reset onto each file the thread scans, so
+ * a file costs its tokens and tree and nothing else.
+ */
+class ParserContext {
+	private static final ThreadLocal<ParserContext> contexts = ThreadLocal.withInitial(ParserContext::new);
+	
+	/** Inputs parsed, and how many of those SLL prediction couldn't handle alone, see {@link #parse} */
+	static final AtomicInteger parses = new AtomicInteger();
+	static final AtomicInteger llFallbacks = new AtomicInteger();
+	
+	/** Swaps in ANTLR's profiling simulator, see {@link #profile()} */
+	static volatile boolean profiling = false;
+	/** The contexts that have profiled any parses, to add up at the end */
+	private static final Queue<ParserContext> profiled = new ConcurrentLinkedQueue<ParserContext>();
+	
+	/** Checked by the lexer and both token streams, started afresh for every file */
+	final Budget budget = new Budget();
+	/** Times the phases of the file this thread is scanning, see {@link Phase} */
+	final PhaseTimer timer = new PhaseTimer();
+	/** Time spent in either parse method on this thread, so callers can take the difference */
+	long parseNanos;
+	
+	final JavaLexer lexer;
+	final CommonTokenStream tokens;
+	/** Reads the token lists handed to {@link #parse(List, Function)} */
+	private final CommonTokenStream regions = budgeted(new ListTokenSource(Collections.<Token>emptyList()));
+	final JavaParser parser;
+	
+	private final BailErrorStrategy bail = new BailErrorStrategy();
+	private final DefaultErrorStrategy recover = new DefaultErrorStrategy();
+	private DfaCache.Generation generation;
+	/** The decisions of the files this thread profiled before the current one */
+	private DecisionProfile profile;
+	
+	private ParserContext(){
+		lexer = new JavaLexer(new ANTLRInputStream("")){
+			@Override
+			public Token nextToken() {
+				budget.check();
+				return super.nextToken();
+			}
+		};
+		lexer.removeErrorListeners();
+		lexer.setTokenFactory(SlimToken.FACTORY);
+		tokens = budgeted(lexer);
+		parser = new JavaParser(tokens);
+		parser.removeErrorListeners();
+	}
+	
+	/** Prediction looks ahead through LT, so checking there catches runaway decisions */
+	private CommonTokenStream budgeted(TokenSource source){
+		return new CommonTokenStream(source){
+			@Override
+			public Token LT(int k) {
+				budget.check();
+				return super.LT(k);
+			}
+		};
+	}
+	
+	/** The context of the calling thread */
+	static ParserContext get(){
+		return contexts.get();
+	}
+	
+	/**
+	 * Points the lexer at a new input and drops everything left from the last one,
+	 * moving the parser onto a new DFA generation if the cache has been cleared.
+	 * When profiling, every input gets a new profiling simulator once the last
+	 * one's counts are added to the profile, so its per-event records don't pile up.
+	 */
+	void reset(CharStream in){
+		DfaCache.Generation current = DfaCache.current();
+		boolean wasProfiling = parser.getInterpreter() instanceof ProfilingATNSimulator;
+		if (wasProfiling) profile.add(((ProfilingATNSimulator) parser.getInterpreter()).getDecisionInfo());
+		if (current != generation || wasProfiling || profiling){
+			parser.setInterpreter(new ParserATNSimulator(parser, parser.getATN(), current.decisionToDFA, current.contexts));
+			if (profiling) startProfiling();
+			generation = current;
+		}
+		// The lexer doesn't rewind a stream it is given, and skeletons lex theirs twice
+		in.seek(0);
+		lexer.setInputStream(in);
+		tokens.setTokenSource(lexer);
+		parser.setTokenStream(tokens);
+	}
+	
+	/**
+	 * Parses with SLL prediction first, bailing out at the first syntax error, which
+	 * is much faster and gives the same tree whenever it succeeds. Only inputs that
+	 * fail under SLL, either because they need full context or really have errors,
+	 * are parsed again with full LL prediction and the usual error recovery.
+	 */
+	CompilationUnitContext parse(CharStream in){
+		long start = System.nanoTime();
+		Phase previous = timer.enter(Phase.LEX);
+		try {
+			reset(in);
+			// Otherwise the parser pulls tokens as it goes and lexing can't be timed apart
+			if (PhaseTimer.enabled) tokens.fill();
+			timer.enter(Phase.PARSE);
+			return predict(JavaParser::compilationUnit);
+		} finally {
+			timer.exit(previous);
+			parseNanos += System.nanoTime() - start;
+		}
+	}
+	
+	/** The lexer alone, pointed at in, for scans that only need tokens */
+	JavaLexer lexer(CharStream in){
+		reset(in);
+		return lexer;
+	}
+	
+	/** Lexes all of in, the list is only valid until the next call on this context */
+	List<Token> lex(CharStream in){
+		Phase previous = timer.enter(Phase.LEX);
+		try {
+			reset(in);
+			tokens.fill();
+			return tokens.getTokens();
+		} finally {
+			timer.exit(previous);
+		}
+	}
+	
+	/**
+	 * Parses some of the tokens from {@link #lex} with one of the parser's rules,
+	 * giving null if they have syntax errors
+	 */
+	<T extends ParserRuleContext> T parse(List<Token> slice, Function<JavaParser, T> rule){
+		TokenSource source = new ListTokenSource(slice);
+		source.setTokenFactory(SlimToken.FACTORY);
+		regions.setTokenSource(source);
+		parser.setTokenStream(regions);
+		long start = System.nanoTime();
+		Phase previous = timer.enter(Phase.PARSE);
+		try {
+			T tree = predict(rule);
+			return parser.getNumberOfSyntaxErrors() > 0 ? null : tree;
+		} finally {
+			timer.exit(previous);
+			parseNanos += System.nanoTime() - start;
+		}
+	}
+	
+	private void startProfiling(){
+		if (profile == null){
+			profile = new DecisionProfile();
+			profiled.add(this);
+		}
+		// Takes the DFA and context cache of the simulator it replaces
+		parser.setInterpreter(new ProfilingATNSimulator(parser));
+	}
+	
+	/**
+	 * The decisions of every parse profiled so far, on any thread. Only call it
+	 * while no parses are running.
+	 */
+	static DecisionProfile profile(){
+		DecisionProfile total = new DecisionProfile();
+		for (ParserContext context : profiled){
+			total.add(context.profile);
+			if (context.parser.getInterpreter() instanceof ProfilingATNSimulator){
+				total.add(((ProfilingATNSimulator) context.parser.getInterpreter()).getDecisionInfo());
+			}
+		}
+		return total;
+	}
+	
+	private <T extends ParserRuleContext> T predict(Function<JavaParser, T> rule){
+		parses.incrementAndGet();
+		parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+		parser.setErrorHandler(bail);
+		try {
+			return rule.apply(parser);
+		} catch (ParseCancellationException e) {
+			llFallbacks.incrementAndGet();
+			parser.setErrorHandler(recover);
+			parser.reset();
+			parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+			return rule.apply(parser);
+		}
+	}
+}
@@ -0,0 +1,11 @@
+package analysis;
+
+/**
+ * The stages a file goes through in Unit, timed separately by {@link PhaseTimer}.
+ * READ covers reading and decoding the file, REGEX the whole-file forwarding
+ * pattern, LEX the lexer, PARSE the parser including skeleton bodies parsed
+ * during the scan, and SCAN the walk over the tree.
+ */
+public enum Phase {
+	READ, REGEX, LEX, PARSE, SCAN
+}
@@ -0,0 +1,97 @@
+package analysis;
+
+import java.io.PrintStream;
+
+/**
+ * Per-phase times of many files added up, with a histogram of how long each
+ * phase took per file in powers of two microseconds. Kept for each project and
+ * for the whole {@link #corpus} when phases are timed, see {@link PhaseTimer}.
+ */
+public class PhaseStats {
+	private static final Phase[] phases = Phase.values();
+	private static final int buckets = 40;
+	
+	/** Every file timed in this run */
+	public static final PhaseStats corpus = new PhaseStats();
+	
+	public long files = 0;
+	private final long[] times = new long[phases.length * 3];
+	/** Files by the wall time they spent in each phase, bucket b under 2^b micros */
+	private final long[][] histograms = new long[phases.length][buckets];
+	
+	/** Adds the times of one file, as given by {@link PhaseTimer#finish} */
+	public void add(long[] fileTimes){
+		if (fileTimes == null) return;
+		files++;
+		for (int i = 0; i < times.length; i++) times[i] += fileTimes[i];
+		for (Phase phase : phases){
+			long micros = fileTimes[phase.ordinal() * 3] / 1000;
+			histograms[phase.ordinal()][bucket(micros)]++;
+		}
+	}
+	
+	public void add(PhaseStats other){
+		files += other.files;
+		for (int i = 0; i < times.length; i++) times[i] += other.times[i];
+		for (int p = 0; p < phases.length; p++){
+			for (int b = 0; b < buckets; b++) histograms[p][b] += other.histograms[p][b];
+		}
+	}
+	
+	public long wallNanos(Phase phase){
+		return times[phase.ordinal() * 3];
+	}
+	
+	public long cpuNanos(Phase phase){
+		return times[phase.ordinal() * 3 + 1];
+	}
+	
+	public long allocatedBytes(Phase phase){
+		return times[phase.ordinal() * 3 + 2];
+	}
+	
+	private static int bucket(long micros){
+		return Math.min(64 - Long.numberOfLeadingZeros(micros), buckets - 1);
+	}
+	
+	/** The bound in micros that the given fraction of files took less than */
+	private long percentile(Phase phase, double fraction){
+		long[] histogram = histograms[phase.ordinal()];
+		long wanted = (long) Math.ceil(files * fraction);
+		long seen = 0;
+		for (int b = 0; b < buckets; b++){
+			seen += histogram[b];
+			if (seen >= wanted && seen > 0) return 1L << b;
+		}
+		return 0;
+	}
+	
+	/** One line with each phase's wall time, for progress output */
+	public String summary(){
+		StringBuilder line = new StringBuilder();
+		for (Phase phase : phases){
+			if (line.length() > 0) line.append(", ");
+			line.append(phase.name().toLowerCase()).append(' ').append(wallNanos(phase) / 1000000).append("ms");
+		}
+		return line.toString();
+	}
+	
+	/** Prints the totals and percentiles of every phase, then the histograms */
+	public void print(PrintStream out){
+		if (files == 0) return;
+		out.println("Phase times over " + files + " files (wall, cpu, allocated, per file p50/p90/p99 under)");
+		for (Phase phase : phases){
+			out.println(String.format("  %-6s %8dms %8dms %8dMB   %dus/%dus/%dus",
+				phase.name().toLowerCase(), wallNanos(phase) / 1000000, cpuNanos(phase) / 1000000,
+				allocatedBytes(phase) >> 20, percentile(phase, 0.5), percentile(phase, 0.9), percentile(phase, 0.99)));
+		}
+		for (Phase phase : phases){
+			long[] histogram = histograms[phase.ordinal()];
+			StringBuilder line = new StringBuilder("  " + phase.name().toLowerCase() + " files by us:");
+			for (int b = 0; b < buckets; b++){
+				if (histogram[b] > 0) line.append(" <").append(1L << b).append(' ').append(histogram[b]);
+			}
+			out.println(line);
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package analysis;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Wall time, CPU time and allocated bytes of each {@link Phase} of the file the
+ * thread is scanning. Only one phase runs at a time: entering one closes the
+ * span of the phase before it, and exiting goes back to that phase, so a body
+ * parsed in the middle of the scan counts as parsing. Off unless
+ * {@link #enabled}, where entering and exiting cost a field read.
+ */
+final class PhaseTimer {
+	static volatile boolean enabled = false;
+	
+	private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	private static final com.sun.management.ThreadMXBean allocations = threads instanceof com.sun.management.ThreadMXBean
+			&& ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+			? (com.sun.management.ThreadMXBean) threads : null;
+	
+	private static final int phases = Phase.values().length;
+	
+	/** Wall nanos, CPU nanos and allocated bytes for each phase, in that order */
+	private final long[] times = new long[phases * 3];
+	private Phase current;
+	private long wall;
+	private long cpu;
+	private long allocated;
+	
+	/** Clears the times for the next file */
+	void start(){
+		if (!enabled) return;
+		Arrays.fill(times, 0);
+		current = null;
+	}
+	
+	/** Starts timing phase, giving the one it interrupted to pass to {@link #exit} */
+	Phase enter(Phase phase){
+		if (!enabled) return null;
+		Phase previous = current;
+		mark(phase);
+		return previous;
+	}
+	
+	void exit(Phase previous){
+		if (enabled) mark(previous);
+	}
+	
+	/** The times of the file so far, see {@link PhaseStats#add(long[])}, or null when off */
+	long[] finish(){
+		if (!enabled) return null;
+		mark(null);
+		return times.clone();
+	}
+	
+	private void mark(Phase next){
+		long wall = System.nanoTime();
+		long cpu = threads.getCurrentThreadCpuTime();
+		long allocated = allocations == null ? 0 : allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+		if (current != null){
+			int i = current.ordinal() * 3;
+			times[i] += wall - this.wall;
+			times[i + 1] += cpu - this.cpu;
+			times[i + 2] += allocated - this.allocated;
+		}
+		this.wall = wall;
+		this.cpu = cpu;
+		this.allocated = allocated;
+		current = next;
+	}
+}
@@ -0,0 +1,74 @@
+package analysis;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput of a running scan. Workers only bump counters as they finish
+ * files, and a single background thread turns them into a summary line every
+ * so often, so progress reporting never makes the workers wait on the console.
+ */
+public class Progress {
+	private final int totalProjects;
+	private final long totalFiles;
+	private final long totalBytes;
+	private final PrintStream out;
+
+	private final LongAdder files = new LongAdder();
+	private final LongAdder bytes = new LongAdder();
+	private final AtomicInteger projects = new AtomicInteger();
+	private final long started = System.nanoTime();
+	private ScheduledExecutorService reporter;
+
+	public Progress(List<FileManifest> manifests, PrintStream out){
+		this.totalProjects = manifests.size();
+		this.totalFiles = manifests.stream().mapToLong(FileManifest::size).sum();
+		this.totalBytes = manifests.stream().flatMap(m -> m.files.stream()).mapToLong(file -> file.size).sum();
+		this.out = out;
+	}
+
+	/** Prints a summary every intervalMillis until {@link #stop}, never for 0 */
+	public void start(long intervalMillis){
+		if (intervalMillis <= 0) return;
+		reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "progress");
+			thread.setDaemon(true);
+			return thread;
+		});
+		reporter.scheduleAtFixedRate(() -> out.println(this), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/** Stops the reporter and prints the final summary if it was running */
+	public void stop(){
+		if (reporter == null) return;
+		reporter.shutdownNow();
+		reporter = null;
+		out.println(this);
+	}
+
+	public void fileDone(long size){
+		files.increment();
+		bytes.add(size);
+	}
+
+	public void projectDone(){
+		projects.incrementAndGet();
+	}
+
+	@Override
+	public String toString(){
+		double seconds = Math.max(System.nanoTime() - started, 1) / 1e9;
+		long filesDone = files.sum();
+		long bytesDone = bytes.sum();
+		double bytesPerSecond = bytesDone / seconds;
+		String eta = bytesDone == 0 ? "?" : (long)((totalBytes - bytesDone) / bytesPerSecond) + "s";
+		return String.format("%d/%d projects, %d/%d files, %.0f files/s, %.1f MB/s, eta %s",
+				projects.get(), totalProjects, filesDone, totalFiles,
+				filesDone / seconds, bytesPerSecond / (1024 * 1024), eta);
+	}
+}
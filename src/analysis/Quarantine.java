@@ -0,0 +1,113 @@
+package analysis;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Files that ran over their parse budget, kept between runs in a text file with
+ * the size, modification time and path of each on a line, so later scans skip
+ * them without trying again. A file gets another chance once it changes, or
+ * when its line is deleted. A line with just a path skips that file whatever
+ * it holds.
+ */
+public class Quarantine {
+	private static final String header = "# Files skipped for running over the parse budget, as size, modification time and path";
+
+	private final Map<String, FileManifest.Entry> previous;
+	private final Map<String, FileManifest.Entry> added = new ConcurrentHashMap<String, FileManifest.Entry>();
+	/** Files quarantined before that have changed since, and are being tried again */
+	private final Set<String> changed = ConcurrentHashMap.newKeySet();
+
+	private Quarantine(Map<String, FileManifest.Entry> previous){
+		this.previous = previous;
+	}
+
+	public static Quarantine load(Path file){
+		Map<String, FileManifest.Entry> files = new HashMap<String, FileManifest.Entry>();
+		try {
+			for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)){
+				if (line.trim().isEmpty() || line.startsWith("#")) continue;
+				FileManifest.Entry entry = parse(line);
+				files.put(entry.path.toString(), entry);
+			}
+		} catch (NoSuchFileException e) {
+			// Nothing quarantined yet
+		} catch (IOException e) {
+			System.out.println("Ignoring unreadable quarantine " + file + ": " + e);
+		}
+		return new Quarantine(files);
+	}
+
+	private static FileManifest.Entry parse(String line){
+		String[] fields = line.split("\t", 3);
+		if (fields.length == 3){
+			try {
+				return new FileManifest.Entry(Paths.get(fields[2]), Long.parseLong(fields[0]), Long.parseLong(fields[1]));
+			} catch (NumberFormatException e) {
+				// Not ours, take the whole line as a path
+			}
+		}
+		return new FileManifest.Entry(Paths.get(line.trim()), -1, -1);
+	}
+
+	/** Whether the file was quarantined as it is now, it is tried again if it has changed */
+	public boolean contains(FileManifest.Entry file){
+		FileManifest.Entry quarantined = previous.get(file.path.toString());
+		if (quarantined == null) return false;
+		if (quarantined.size < 0 || quarantined.size == file.size && quarantined.lastModified == file.lastModified) return true;
+		changed.add(file.path.toString());
+		return false;
+	}
+
+	/** Quarantines the unit's file if it ran over its budget, and hands the unit back */
+	public Unit check(FileManifest.Entry file, Unit unit){
+		if (unit.overBudget) added.put(file.path.toString(), file);
+		return unit;
+	}
+
+	/** The files quarantined during this scan */
+	public List<Path> added(){
+		List<Path> paths = new ArrayList<Path>();
+		for (String path : new TreeSet<String>(added.keySet())) paths.add(Paths.get(path));
+		return Collections.unmodifiableList(paths);
+	}
+
+	/** Whether anything was added, or changed files were let back in */
+	public boolean modified(){
+		return !added.isEmpty() || !changed.isEmpty();
+	}
+
+	public int size(){
+		return all().size();
+	}
+
+	private Map<String, FileManifest.Entry> all(){
+		Map<String, FileManifest.Entry> all = new TreeMap<String, FileManifest.Entry>(previous);
+		all.keySet().removeAll(changed);
+		all.putAll(added);
+		return all;
+	}
+
+	public void save(Path file) throws IOException {
+		if (file.getParent() != null) Files.createDirectories(file.getParent());
+		List<String> lines = new ArrayList<String>();
+		lines.add(header);
+		for (FileManifest.Entry entry : all().values()){
+			lines.add(entry.size < 0 ? entry.path.toString() : entry.size + "\t" + entry.lastModified + "\t" + entry.path);
+		}
+		Files.write(file, lines, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,87 @@
+package analysis;
+
+import java.util.Arrays;
+
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+
+import antlr.JavaParser;
+
+/**
+ * Works out a unit's class count, name and superclass from its tokens alone,
+ * without parsing, by following class headers and the braces that open and
+ * close type bodies. Like the tree scan, only classes outside any other class
+ * are counted, and the last of them names the unit.
+ */
+final class QuickStats {
+	private static final byte classBody = 1;
+	private static final byte otherBody = 0;
+	
+	private QuickStats(){}
+	
+	/** Fills in the unit from the tokens, giving how many there were */
+	static int scan(TokenSource tokens, Unit unit){
+		int count = 0;
+		byte[] frames = new byte[16];
+		int depth = 0;
+		int classFrames = 0;
+		// The header of a class declaration being read, up to its opening brace
+		boolean inHeader = false;
+		boolean counted = false;
+		boolean named = false;
+		int angles = 0;
+		StringBuilder superClass = null;
+		int previous = Token.INVALID_TYPE;
+		
+		for (Token token = tokens.nextToken(); token.getType() != Token.EOF; token = tokens.nextToken()){
+			int type = token.getType();
+			switch (type){
+			case JavaParser.CLASS:
+				// Foo.class is a literal, not a declaration
+				if (previous == JavaParser.DOT) break;
+				inHeader = true;
+				counted = classFrames == 0;
+				named = false;
+				angles = 0;
+				superClass = null;
+				if (counted) unit.classCount++;
+				break;
+			case JavaParser.LBRACE:
+				if (depth == frames.length) frames = Arrays.copyOf(frames, depth * 2);
+				frames[depth++] = inHeader ? classBody : otherBody;
+				if (inHeader){
+					classFrames++;
+					if (counted && superClass != null) unit.superClassName = superClass.toString();
+				}
+				inHeader = false;
+				superClass = null;
+				break;
+			case JavaParser.RBRACE:
+				if (depth > 0 && frames[--depth] == classBody) classFrames--;
+				break;
+			default:
+				if (!inHeader || !counted) break;
+				if (!named){
+					if (type == JavaParser.Identifier) unit.className = token.getText();
+					named = true;
+				} else if (superClass != null){
+					if (type != JavaParser.IMPLEMENTS){
+						superClass.append(token.getText());
+						break;
+					}
+					unit.superClassName = superClass.toString();
+					superClass = null;
+				} else if (type == JavaParser.LT){
+					angles++;
+				} else if (type == JavaParser.GT){
+					angles--;
+				} else if (type == JavaParser.EXTENDS && angles == 0){
+					superClass = new StringBuilder();
+				}
+			}
+			previous = type;
+			count++;
+		}
+		return count;
+	}
+}
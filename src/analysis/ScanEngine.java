@@ -0,0 +1,73 @@
+package analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+/**
+ * Parses the files of many projects on one work-stealing pool. Work is split
+ * down to single files across all projects so a big project can't keep the
+ * other workers idle, and units come back in the order the files were given.
+ */
+public class ScanEngine {
+	private final ForkJoinPool pool;
+	
+	public ScanEngine(int parallelism){
+		this.pool = new ForkJoinPool(parallelism);
+	}
+	
+	public List<List<Unit>> scan(List<FileManifest> projects, Function<FileManifest.Entry, Unit> scanner){
+		FileManifest.Entry[] files = projects
+			.stream()
+			.flatMap(project -> project.files.stream())
+			.toArray(FileManifest.Entry[]::new);
+		Unit[] units = new Unit[files.length];
+		if (files.length > 0) pool.invoke(new ScanTask(scanner, files, units, 0, files.length));
+		
+		List<List<Unit>> results = new ArrayList<List<Unit>>(projects.size());
+		int offset = 0;
+		for (FileManifest project : projects){
+			List<Unit> projectUnits = new ArrayList<Unit>(project.size());
+			for (int i = offset; i < offset + project.size(); i++){
+				projectUnits.add(units[i]);
+			}
+			results.add(projectUnits);
+			offset += project.size();
+		}
+		return results;
+	}
+	
+	public void shutdown(){
+		pool.shutdown();
+	}
+	
+	private static class ScanTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private final Function<FileManifest.Entry, Unit> scanner;
+		private final FileManifest.Entry[] files;
+		private final Unit[] units;
+		private final int start;
+		private final int end;
+		
+		ScanTask(Function<FileManifest.Entry, Unit> scanner, FileManifest.Entry[] files, Unit[] units, int start, int end){
+			this.scanner = scanner;
+			this.files = files;
+			this.units = units;
+			this.start = start;
+			this.end = end;
+		}
+		
+		@Override
+		protected void compute() {
+			if (end - start == 1){
+				units[start] = scanner.apply(files[start]);
+				return;
+			}
+			int mid = (start + end) >>> 1;
+			invokeAll(new ScanTask(scanner, files, units, start, mid), new ScanTask(scanner, files, units, mid, end));
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package analysis;
+
+import java.nio.file.Path;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder events for the slow parts of a scan, so a recording of a
+ * long run shows which files and projects took the time. While nothing is
+ * recording, beginning and ending an event costs next to nothing and the
+ * fields are never filled in. jdk.jfr is why the project needs Java 11.
+ */
+final class ScanEvents {
+	private ScanEvents(){}
+	
+	@Name("analysis.FileRead")
+	@Label("File Read")
+	@Category({"Inheritance Analysis", "Files"})
+	@Description("Reading and decoding a source file")
+	static final class FileRead extends Event {
+		@Label("Path")
+		String path;
+		@Label("Size")
+		@DataAmount
+		long bytes;
+		
+		void end(Path path, long bytes){
+			end();
+			if (!shouldCommit()) return;
+			this.path = path.toString();
+			this.bytes = bytes;
+			commit();
+		}
+	}
+	
+	@Name("analysis.FileParse")
+	@Label("File Parse")
+	@Category({"Inheritance Analysis", "Files"})
+	@Description("Reading, lexing and parsing a source file, or only lexing it when no parse is needed")
+	static final class FileParse extends Event {
+		@Label("Path")
+		String path;
+		@Label("Parse Mode")
+		String mode;
+		@Label("Tokens")
+		int tokens;
+		@Label("Parsed")
+		boolean parsed;
+		
+		void end(Path path, ParseMode mode, int tokens, boolean parsed){
+			end();
+			if (!shouldCommit()) return;
+			this.path = path.toString();
+			this.mode = mode.name();
+			this.tokens = tokens;
+			this.parsed = parsed;
+			commit();
+		}
+	}
+	
+	@Name("analysis.FileScan")
+	@Label("File Scan")
+	@Category({"Inheritance Analysis", "Files"})
+	@Description("Walking the parse tree of a source file, including bodies a skeleton parses on the way")
+	static final class FileScan extends Event {
+		@Label("Path")
+		String path;
+		@Label("Classes")
+		int classes;
+		@Label("Failures")
+		int failures;
+		
+		void end(Unit unit){
+			end();
+			if (!shouldCommit()) return;
+			this.path = unit.path.toString();
+			this.classes = unit.classCount;
+			this.failures = unit.failureSet.failures.size();
+			commit();
+		}
+	}
+	
+	@Name("analysis.ProjectScan")
+	@Label("Project Scan")
+	@Category({"Inheritance Analysis", "Projects"})
+	@Description("Scanning a project's files and folding them into the results. Projects scanned in the same batch share their start")
+	static final class ProjectScan extends Event {
+		@Label("Project")
+		String project;
+		@Label("Files")
+		int files;
+		@Label("Compiled Files")
+		int compiled;
+		
+		void end(FileManifest manifest, Project project){
+			end();
+			if (!shouldCommit()) return;
+			this.project = manifest.root.toString();
+			this.files = manifest.size();
+			this.compiled = project.units.size();
+			commit();
+		}
+	}
+}
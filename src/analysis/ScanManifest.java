@@ -0,0 +1,183 @@
+package analysis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Remembers the fingerprint (size, modification time and content hash) of every
+ * scanned file together with what the scan found in it. An incremental scan only
+ * parses files whose fingerprint changed and reuses the stored unit for the rest.
+ * Units are held as the bytes they are saved as, so the manifest costs a fraction
+ * of the units themselves and a streamed scan still drops each project once done.
+ */
+public class ScanManifest {
+	private static final int MAGIC = 0x4A494131; // "JIA1"
+	private static final int VERSION = 4;
+	private static final byte[] NO_HASH = new byte[0];
+	
+	private final ScanOptions options;
+	private final Map<String, Record> previous;
+	private final Map<String, Record> current = new ConcurrentHashMap<String, Record>();
+	
+	public final AtomicInteger reused = new AtomicInteger();
+	public final AtomicInteger parsed = new AtomicInteger();
+	
+	private ScanManifest(ScanOptions options, Map<String, Record> previous){
+		this.options = options;
+		this.previous = previous;
+	}
+	
+	/**
+	 * A missing, outdated or unreadable manifest just means every file gets parsed,
+	 * as does one written with options that change what a scan finds.
+	 */
+	public static ScanManifest load(Path file, ScanOptions options){
+		Map<String, Record> records = new HashMap<String, Record>();
+		if (!Files.exists(file)) return new ScanManifest(options, records);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))){
+			if (in.readInt() != MAGIC || in.readInt() != VERSION
+					|| !options.resultSettings().equals(in.readUTF())) return new ScanManifest(options, records);
+			for (int i = in.readInt(); i > 0; i--){
+				Record record = Record.read(in);
+				records.put(record.path(), record);
+			}
+		} catch (IOException | RuntimeException e) {
+			System.out.println("Ignoring unreadable manifest " + file + ": " + e);
+			records.clear();
+		}
+		return new ScanManifest(options, records);
+	}
+	
+	/**
+	 * Returns the stored unit when the file is unchanged since the last scan,
+	 * otherwise parses it. Size and modification time are checked first so an
+	 * untouched file is never even read, and a file that is read for its hash is
+	 * parsed from the same buffer.
+	 */
+	public Unit scan(FileManifest.Entry file){
+		String key = file.path.toString();
+		Record stored = previous.get(key);
+		if (stored != null && stored.size == file.size && stored.lastModified == file.lastModified){
+			return reuse(key, stored, file, stored.hash);
+		}
+		MessageDigest digest = sha1();
+		BufferCharStream source;
+		try {
+			source = SourceReader.read(file.path, digest);
+		} catch (IOException e) {
+			source = null;
+		}
+		byte[] hash = source == null || digest == null ? NO_HASH : digest.digest();
+		if (stored != null && hash.length > 0 && Arrays.equals(hash, stored.hash)){
+			return reuse(key, stored, file, hash);
+		}
+		parsed.incrementAndGet();
+		Unit unit = new Unit(file.path, options, source);
+		// Left out so the file is tried again once it leaves the quarantine
+		if (!unit.overBudget) current.put(key, new Record(file.size, file.lastModified, hash, Record.serialize(unit)));
+		return unit;
+	}
+	
+	private Unit reuse(String key, Record stored, FileManifest.Entry file, byte[] hash){
+		reused.incrementAndGet();
+		current.put(key, new Record(file.size, file.lastModified, hash, stored.unit));
+		return stored.unit();
+	}
+	
+	/**
+	 * Writes out the files seen by this scan, ready to be loaded by the next one
+	 */
+	public void save(Path file) throws IOException {
+		if (file.getParent() != null) Files.createDirectories(file.getParent());
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))){
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(options.resultSettings());
+			out.writeInt(current.size());
+			for (Record record : new TreeMap<String, Record>(current).values()){
+				record.write(out);
+			}
+		}
+	}
+	
+	private static MessageDigest sha1(){
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			return null;
+		}
+	}
+	
+	private static class Record {
+		final long size;
+		final long lastModified;
+		final byte[] hash;
+		/** The unit as {@link Unit#write} wrote it, only read back if it is reused */
+		final byte[] unit;
+		
+		Record(long size, long lastModified, byte[] hash, byte[] unit){
+			this.size = size;
+			this.lastModified = lastModified;
+			this.hash = hash;
+			this.unit = unit;
+		}
+		
+		static byte[] serialize(Unit unit){
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try {
+				unit.write(new DataOutputStream(bytes));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return bytes.toByteArray();
+		}
+		
+		Unit unit(){
+			try {
+				return Unit.read(new DataInputStream(new ByteArrayInputStream(unit)));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		/** The unit's path, which Unit.write puts first */
+		String path() throws IOException {
+			return BinaryFormat.readString(new DataInputStream(new ByteArrayInputStream(unit)));
+		}
+		
+		static Record read(DataInputStream in) throws IOException {
+			long size = in.readLong();
+			long lastModified = in.readLong();
+			byte[] hash = new byte[in.readUnsignedByte()];
+			in.readFully(hash);
+			byte[] unit = new byte[in.readInt()];
+			in.readFully(unit);
+			return new Record(size, lastModified, hash, unit);
+		}
+		
+		void write(DataOutputStream out) throws IOException {
+			out.writeLong(size);
+			out.writeLong(lastModified);
+			out.writeByte(hash.length);
+			out.write(hash);
+			out.writeInt(unit.length);
+			out.write(unit);
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package analysis;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Knobs for a corpus scan, filled in from the command line by {@link Analysis}.
+ */
+public class ScanOptions {
+	public String corpus = "/Users/lukeinkster/Documents/QualitasCorpus-20130901r/Systems";
+	public int start = 700;
+	public int end = 800;
+	public int parallelism = Runtime.getRuntime().availableProcessors();
+	public boolean incremental = false;
+	public String manifest = "output/manifest.bin";
+	public boolean stream = false;
+	public ForwardingDetection forwarding = ForwardingDetection.TREE;
+	public ParseMode parse = ParseMode.FULL;
+	public Set<Metric> metrics = EnumSet.allOf(Metric.class);
+	public long budgetMillis = 30000;
+	public String quarantine = "output/quarantine.txt";
+	public DfaCache.Policy dfaCache = DfaCache.Policy.KEEP;
+	public long dfaStateCap = 200000;
+	public long progressMillis = 5000;
+	/** Prints every file as it is scanned */
+	public boolean verbose = false;
+	/** Times each {@link Phase} of every file, see {@link PhaseStats} */
+	public boolean phases = false;
+	/** How many of the slowest files to list in slowLog, 0 for no log */
+	public int slowFiles = 20;
+	public String slowLog = "output/slow-files.txt";
+	/** Profiles the parser's prediction decisions, see {@link DecisionProfile} */
+	public boolean profile = false;
+
+	/**
+	 * The options that change what a scan finds in a file, as opposed to how fast
+	 */
+	public String resultSettings(){
+		ScanPlan plan = plan();
+		// VERIFY keeps what the full parse found
+		boolean full = parse == ParseMode.FULL || parse == ParseMode.VERIFY;
+		return "forwarding=" + (forwarding == ForwardingDetection.REGEX ? "regex" : "tree")
+				+ (plan.all() ? "" : ",plan=" + plan)
+				+ (full ? "" : ",parse=" + parse.name().toLowerCase());
+	}
+	
+	public ScanPlan plan(){
+		return ScanPlan.of(metrics);
+	}
+	
+	public static ScanOptions fromArgs(String[] args){
+		ScanOptions options = new ScanOptions();
+		for (int i = 0; i < args.length; i++){
+			switch (args[i]){
+			case "--corpus":
+				options.corpus = args[++i];
+				break;
+			case "--start":
+				options.start = Integer.parseInt(args[++i]);
+				break;
+			case "--end":
+				options.end = Integer.parseInt(args[++i]);
+				break;
+			case "--threads":
+				options.parallelism = Integer.parseInt(args[++i]);
+				break;
+			case "--incremental":
+				options.incremental = true;
+				break;
+			case "--manifest":
+				options.manifest = args[++i];
+				break;
+			case "--stream":
+				options.stream = true;
+				break;
+			case "--forwarding":
+				options.forwarding = ForwardingDetection.valueOf(args[++i].toUpperCase());
+				break;
+			case "--budget":
+				options.budgetMillis = Long.parseLong(args[++i]);
+				break;
+			case "--quarantine":
+				options.quarantine = args[++i];
+				break;
+			case "--metrics":
+				options.metrics = EnumSet.noneOf(Metric.class);
+				for (String name : args[++i].split(",")) options.metrics.add(Metric.fromName(name));
+				break;
+			case "--parse":
+				options.parse = ParseMode.valueOf(args[++i].toUpperCase());
+				break;
+			case "--dfa-cache":
+				options.dfaCache = DfaCache.Policy.valueOf(args[++i].toUpperCase());
+				break;
+			case "--dfa-cap":
+				options.dfaCache = DfaCache.Policy.CAP;
+				options.dfaStateCap = Long.parseLong(args[++i]);
+				break;
+			case "--progress":
+				options.progressMillis = Long.parseLong(args[++i]);
+				break;
+			case "--verbose":
+				options.verbose = true;
+				break;
+			case "--phases":
+				options.phases = true;
+				break;
+			case "--slow-files":
+				options.slowFiles = Integer.parseInt(args[++i]);
+				break;
+			case "--slow-log":
+				options.slowLog = args[++i];
+				break;
+			case "--profile":
+				options.profile = true;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option: " + args[i]);
+			}
+		}
+		if (options.parse == ParseMode.TOKENS && !options.plan().headersOnly()){
+			throw new IllegalArgumentException("--parse tokens only finds classes and superclasses, "
+					+ "use it with --metrics limited to projects, files, classes, extends and extended");
+		}
+		return options;
+	}
+}
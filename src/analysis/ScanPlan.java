@@ -0,0 +1,46 @@
+package analysis;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The stages of a file scan that a set of metrics needs. Stages that aren't
+ * needed are skipped: no forwarding check or regex pass without forwarding, no
+ * constructor scan without failures and no method body scan without delegation.
+ * Together with a skeleton parse, bodies nothing looks at are never parsed, and
+ * a plan that only needs class headers can do without parsing, see {@link ParseMode}.
+ */
+public class ScanPlan {
+	public static final ScanPlan ALL = of(EnumSet.allOf(Metric.class));
+	
+	public final boolean forwarding;
+	public final boolean constructors;
+	public final boolean methodBodies;
+	
+	private ScanPlan(boolean forwarding, boolean constructors, boolean methodBodies){
+		this.forwarding = forwarding;
+		this.constructors = constructors;
+		this.methodBodies = methodBodies;
+	}
+	
+	public static ScanPlan of(Set<Metric> metrics){
+		return new ScanPlan(
+			metrics.stream().anyMatch(metric -> metric.needsForwarding),
+			metrics.stream().anyMatch(metric -> metric.needsConstructors),
+			metrics.stream().anyMatch(metric -> metric.needsMethodBodies));
+	}
+	
+	public boolean all(){
+		return forwarding && constructors && methodBodies;
+	}
+	
+	/** Whether class headers alone are enough */
+	public boolean headersOnly(){
+		return !forwarding && !constructors && !methodBodies;
+	}
+	
+	@Override
+	public String toString(){
+		return (forwarding ? "forwarding," : "") + (constructors ? "constructors," : "") + (methodBodies ? "methods," : "") + "headers";
+	}
+}
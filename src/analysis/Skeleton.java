@@ -0,0 +1,230 @@
+package analysis;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import antlr.JavaParser;
+import antlr.JavaParser.CompilationUnitContext;
+import antlr.JavaParser.ConstructorDeclarationContext;
+import antlr.JavaParser.MethodDeclarationContext;
+
+/**
+ * A file parsed with the contents of its method and constructor bodies left out,
+ * found by matching braces on the tokens. Each body keeps its braces, so it parses
+ * as an empty block, and {@link #expand} parses the real one and puts it in the
+ * tree in its place, which lets a scan only pay for the bodies it looks at.
+ *
+ * Bodies are only taken out of class and enum bodies, never from initializers,
+ * annotation arguments or interfaces, and files where the braces don't balance
+ * or the skeleton doesn't parse cleanly are parsed in full instead. A skeleton is
+ * only valid until its thread reads the next file.
+ */
+class Skeleton {
+	/** The body of a method or constructor, as indices into the file's tokens */
+	private static class Body {
+		final int start;
+		final int stop;
+		final boolean declaresClass;
+		
+		Body(int start, int stop, boolean declaresClass){
+			this.start = start;
+			this.stop = stop;
+			this.declaresClass = declaresClass;
+		}
+	}
+	
+	private final ParserContext context;
+	private final CharStream input;
+	private final List<Token> tokens;
+	/** Keyed by the opening brace each body keeps in the skeleton */
+	private final Map<Token, Body> bodies = new IdentityHashMap<Token, Body>();
+	private final List<Token> kept;
+	private int pos = 0;
+	
+	CompilationUnitContext tree;
+	
+	private Skeleton(ParserContext context, CharStream input){
+		this.context = context;
+		this.input = input;
+		this.tokens = context.lex(input);
+		this.kept = new ArrayList<Token>(tokens.size());
+	}
+	
+	static Skeleton parse(ParserContext context, CharStream input){
+		Skeleton skeleton = new Skeleton(context, input);
+		if (skeleton.strip()){
+			skeleton.tree = context.parse(skeleton.kept, JavaParser::compilationUnit);
+		}
+		if (skeleton.tree == null){
+			skeleton.bodies.clear();
+			skeleton.tree = context.parse(input);
+		}
+		return skeleton;
+	}
+	
+	/** Parses the whole file again, for when a body turns out not to parse on its own */
+	CompilationUnitContext full(){
+		return context.parse(input);
+	}
+	
+	/**
+	 * Puts the real body of a method in place of its empty one, if it was left out.
+	 * Bodies that declare a class are always parsed, as the class counts no matter
+	 * what the scan is after; otherwise only if needed.
+	 */
+	void expand(MethodDeclarationContext method, boolean needed){
+		if (method.methodBody() == null) return;
+		Body body = bodies.remove(method.methodBody().getStart());
+		if (body == null || !(needed || body.declaresClass)) return;
+		graft(method.methodBody(), context.parse(tokens.subList(body.start, body.stop + 1), JavaParser::methodBody));
+	}
+	
+	void expand(ConstructorDeclarationContext constructor, boolean needed){
+		if (constructor.constructorBody() == null) return;
+		Body body = bodies.remove(constructor.constructorBody().getStart());
+		if (body == null || !(needed || body.declaresClass)) return;
+		graft(constructor.constructorBody(), context.parse(tokens.subList(body.start, body.stop + 1), JavaParser::constructorBody));
+	}
+	
+	private static void graft(ParserRuleContext empty, ParserRuleContext body){
+		if (body == null) throw new ParseCancellationException("Body doesn't parse on its own");
+		ParserRuleContext parent = empty.getParent();
+		for (int i = 0; i < parent.getChildCount(); i++){
+			if (parent.children.get(i) != empty) continue;
+			parent.children.set(i, body);
+			body.parent = parent;
+			body.invokingState = empty.invokingState;
+			return;
+		}
+	}
+	
+	/** Fills kept with the skeleton's tokens, false if the braces don't balance */
+	private boolean strip(){
+		if (!declarations(false, false) || type() != Token.EOF) return false;
+		kept.add(tokens.get(pos));
+		return true;
+	}
+	
+	/**
+	 * Copies the declarations of one level, the top of the file or the body of a
+	 * type, up to the closing brace or the end of the file. Method and constructor
+	 * bodies are left out when strip is set, and an enum body starts with its
+	 * constants, whose bodies are class bodies.
+	 */
+	private boolean declarations(boolean strip, boolean enumConstants){
+		int parens = 0;
+		int kind = 0;
+		boolean initializer = false;
+		boolean afterParameters = false;
+		while (true){
+			int type = type();
+			if (type == Token.EOF || type == JavaParser.RBRACE) return parens == 0;
+			if (type == JavaParser.LBRACE){
+				boolean copied;
+				if (parens > 0 || initializer) copied = copyBlock();
+				// The body of an enum constant, even one with arguments
+				else if (enumConstants && kind == 0) copied = typeBody(true, false);
+				else if (afterParameters && strip) copied = leaveOut();
+				else if (kind != 0) copied = typeBody(kind != JavaParser.INTERFACE, kind == JavaParser.ENUM);
+				else copied = copyBlock();
+				if (!copied) return false;
+				kind = 0;
+				initializer = false;
+				afterParameters = false;
+				continue;
+			}
+			
+			switch (type){
+			case JavaParser.LPAREN:
+				parens++;
+				afterParameters = false;
+				break;
+			case JavaParser.RPAREN:
+				parens--;
+				afterParameters = parens == 0;
+				break;
+			case JavaParser.SEMI:
+				if (parens == 0){
+					kind = 0;
+					initializer = false;
+					enumConstants = false;
+				}
+				afterParameters = false;
+				break;
+			case JavaParser.ASSIGN:
+				if (parens == 0) initializer = true;
+				afterParameters = false;
+				break;
+			case JavaParser.CLASS:
+			case JavaParser.INTERFACE:
+			case JavaParser.ENUM:
+				// Foo.class is a literal, not a declaration
+				if (parens == 0 && !initializer && (pos == 0 || tokens.get(pos - 1).getType() != JavaParser.DOT)) kind = type;
+				afterParameters = false;
+				break;
+			case JavaParser.THROWS:
+			case JavaParser.Identifier:
+			case JavaParser.DOT:
+			case JavaParser.COMMA:
+			case JavaParser.LBRACK:
+			case JavaParser.RBRACK:
+				// throws clauses and old style array dimensions can follow the parameters
+				break;
+			default:
+				afterParameters = false;
+			}
+			kept.add(tokens.get(pos++));
+		}
+	}
+	
+	private boolean typeBody(boolean strip, boolean enumConstants){
+		kept.add(tokens.get(pos++));
+		if (!declarations(strip, enumConstants) || type() != JavaParser.RBRACE) return false;
+		kept.add(tokens.get(pos++));
+		return true;
+	}
+	
+	/** Copies a brace-matched block as it is */
+	private boolean copyBlock(){
+		int depth = 0;
+		do {
+			int type = type();
+			if (type == Token.EOF) return false;
+			if (type == JavaParser.LBRACE) depth++;
+			else if (type == JavaParser.RBRACE) depth--;
+			kept.add(tokens.get(pos++));
+		} while (depth > 0);
+		return true;
+	}
+	
+	/** Keeps only the braces of a body and remembers where its contents are */
+	private boolean leaveOut(){
+		int start = pos;
+		int depth = 0;
+		boolean declaresClass = false;
+		do {
+			int type = type();
+			if (type == Token.EOF) return false;
+			if (type == JavaParser.LBRACE) depth++;
+			else if (type == JavaParser.RBRACE) depth--;
+			else if (type == JavaParser.CLASS && tokens.get(pos - 1).getType() != JavaParser.DOT) declaresClass = true;
+			pos++;
+		} while (depth > 0);
+		kept.add(tokens.get(start));
+		kept.add(tokens.get(pos - 1));
+		bodies.put(tokens.get(start), new Body(start, pos - 1, declaresClass));
+		return true;
+	}
+	
+	private int type(){
+		return tokens.get(pos).getType();
+	}
+}
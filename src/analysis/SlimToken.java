@@ -0,0 +1,141 @@
+package analysis;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.WritableToken;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Pair;
+
+/**
+ * The smallest token the parser is happy with. The grammar skips whitespace and
+ * comments, so every token is on the default channel and needs no field for it,
+ * and text is only kept for the few tokens the parser makes up during error
+ * recovery. Everything else reads its text from the input when asked.
+ */
+class SlimToken implements WritableToken {
+	static final TokenFactory<SlimToken> FACTORY = new TokenFactory<SlimToken>(){
+		@Override
+		public SlimToken create(Pair<TokenSource, CharStream> source, int type, String text,
+				int channel, int start, int stop, int line, int charPositionInLine) {
+			SlimToken token = new SlimToken(source, type, start, stop, line, charPositionInLine);
+			token.text = text;
+			return token;
+		}
+		
+		@Override
+		public SlimToken create(int type, String text) {
+			SlimToken token = new SlimToken(null, type, -1, -1, 0, -1);
+			token.text = text;
+			return token;
+		}
+	};
+	
+	private final Pair<TokenSource, CharStream> source;
+	private int type;
+	private int line;
+	private int charPositionInLine;
+	private int index = -1;
+	private final int start;
+	private final int stop;
+	private String text;
+	
+	private SlimToken(Pair<TokenSource, CharStream> source, int type, int start, int stop, int line, int charPositionInLine){
+		this.source = source;
+		this.type = type;
+		this.start = start;
+		this.stop = stop;
+		this.line = line;
+		this.charPositionInLine = charPositionInLine;
+	}
+	
+	@Override
+	public String getText() {
+		if (text != null) return text;
+		CharStream input = getInputStream();
+		if (input == null) return null;
+		if (start < input.size() && stop < input.size()) return input.getText(Interval.of(start, stop));
+		return "<EOF>";
+	}
+	
+	@Override
+	public int getType() {
+		return type;
+	}
+	
+	@Override
+	public int getLine() {
+		return line;
+	}
+	
+	@Override
+	public int getCharPositionInLine() {
+		return charPositionInLine;
+	}
+	
+	@Override
+	public int getChannel() {
+		return Token.DEFAULT_CHANNEL;
+	}
+	
+	@Override
+	public int getTokenIndex() {
+		return index;
+	}
+	
+	@Override
+	public int getStartIndex() {
+		return start;
+	}
+	
+	@Override
+	public int getStopIndex() {
+		return stop;
+	}
+	
+	@Override
+	public TokenSource getTokenSource() {
+		return source == null ? null : source.a;
+	}
+	
+	@Override
+	public CharStream getInputStream() {
+		return source == null ? null : source.b;
+	}
+	
+	@Override
+	public void setText(String text) {
+		this.text = text;
+	}
+	
+	@Override
+	public void setType(int type) {
+		this.type = type;
+	}
+	
+	@Override
+	public void setLine(int line) {
+		this.line = line;
+	}
+	
+	@Override
+	public void setCharPositionInLine(int charPositionInLine) {
+		this.charPositionInLine = charPositionInLine;
+	}
+	
+	@Override
+	public void setChannel(int channel) {
+		// Always the default channel
+	}
+	
+	@Override
+	public void setTokenIndex(int index) {
+		this.index = index;
+	}
+	
+	@Override
+	public String toString() {
+		return "[@" + index + "," + start + ":" + stop + "='" + getText() + "',<" + type + ">," + line + ":" + charPositionInLine + "]";
+	}
+}
@@ -0,0 +1,143 @@
+package analysis;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The files of a scan that took longest to parse, and the ones that parsed the
+ * fewest tokens a second, each kept in a heap bounded to the top few so the
+ * rest of the corpus costs nothing to remember. Every worker keeps its own
+ * heaps, merged when they are written. Written out at the end of a
+ * scan to show which outliers are worth optimizing for.
+ */
+public class SlowFiles {
+	/** Smaller files are left out of the throughput ranking, where fixed costs swamp their rate */
+	private static final int minTokensForRate = 1000;
+	
+	private static final Comparator<Entry> byParseTime = Comparator.comparingLong(entry -> entry.parseNanos);
+	/** Slowest first is lowest rate first, so the heap's head is the fastest kept */
+	private static final Comparator<Entry> bySlowness = Comparator.comparingDouble(entry -> -entry.tokensPerSecond());
+	
+	/** Every file parsed in this run */
+	public static final SlowFiles corpus = new SlowFiles();
+	
+	public static class Entry {
+		public final Path path;
+		public final long bytes;
+		public final int tokens;
+		public final long parseNanos;
+		public final long totalNanos;
+		/** See {@link Unit#phaseTimes} */
+		public final long[] phaseTimes;
+		
+		Entry(Path path, long bytes, Unit unit, long totalNanos){
+			this.path = path;
+			this.bytes = bytes;
+			this.tokens = unit.tokenCount;
+			this.parseNanos = unit.parseNanos;
+			this.totalNanos = totalNanos;
+			this.phaseTimes = unit.phaseTimes;
+		}
+		
+		double tokensPerSecond(){
+			return tokens * 1e9 / Math.max(parseNanos, 1);
+		}
+	}
+	
+	private volatile int limit = 0;
+	/** Each worker ranks its own files, so adding one never waits on another worker */
+	private final Queue<Rankings> threads = new ConcurrentLinkedQueue<Rankings>();
+	private final ThreadLocal<Rankings> rankings = ThreadLocal.withInitial(() -> {
+		Rankings rankings = new Rankings();
+		threads.add(rankings);
+		return rankings;
+	});
+	
+	private class Rankings {
+		final PriorityQueue<Entry> slowest = new PriorityQueue<Entry>(byParseTime);
+		final PriorityQueue<Entry> lowestRate = new PriorityQueue<Entry>(bySlowness);
+		
+		void add(Entry entry){
+			offer(slowest, entry, byParseTime);
+			if (entry.tokens >= minTokensForRate) offer(lowestRate, entry, bySlowness);
+		}
+		
+		void add(Rankings other){
+			for (Entry entry : other.slowest) offer(slowest, entry, byParseTime);
+			for (Entry entry : other.lowestRate) offer(lowestRate, entry, bySlowness);
+		}
+	}
+	
+	/** How many files to keep in each ranking, none unless set */
+	public void limit(int limit){
+		this.limit = limit;
+	}
+	
+	/** Ranks a unit scanned from a file of the given size, ignoring ones that weren't parsed this run */
+	public void add(FileManifest.Entry file, Unit unit, long totalNanos){
+		if (unit.parseNanos == 0 || limit <= 0) return;
+		rankings.get().add(new Entry(file.path, file.size, unit, totalNanos));
+	}
+	
+	private void offer(PriorityQueue<Entry> heap, Entry entry, Comparator<Entry> order){
+		if (heap.size() < limit) heap.add(entry);
+		else if (order.compare(entry, heap.peek()) > 0){
+			heap.poll();
+			heap.add(entry);
+		}
+	}
+	
+	/** Merges what every worker ranked and writes it out, only call it while no files are being scanned */
+	public void write(Path file) throws IOException {
+		Rankings merged = new Rankings();
+		for (Rankings thread : threads) merged.add(thread);
+		if (merged.slowest.isEmpty()) return;
+		if (file.getParent() != null) Files.createDirectories(file.getParent());
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))){
+			out.println("# Slowest " + merged.slowest.size() + " files by parse time");
+			write(out, merged.slowest, byParseTime);
+			out.println();
+			out.println("# Slowest " + merged.lowestRate.size() + " files by tokens per second, of those with at least " + minTokensForRate + " tokens");
+			write(out, merged.lowestRate, bySlowness);
+		}
+	}
+	
+	private static void write(PrintWriter out, PriorityQueue<Entry> heap, Comparator<Entry> order){
+		List<Entry> entries = new ArrayList<Entry>(heap);
+		entries.sort(order.reversed());
+		out.println("# parse ms, total ms, bytes, tokens, tokens/s, " + phaseHeader() + ", path");
+		for (Entry entry : entries){
+			out.println(String.format("%.1f\t%.1f\t%d\t%d\t%.0f\t%s\t%s",
+				entry.parseNanos / 1e6, entry.totalNanos / 1e6, entry.bytes, entry.tokens,
+				entry.tokensPerSecond(), phases(entry.phaseTimes), entry.path));
+		}
+	}
+	
+	private static String phaseHeader(){
+		StringBuilder header = new StringBuilder();
+		for (Phase phase : Phase.values()){
+			if (header.length() > 0) header.append('/');
+			header.append(phase.name().toLowerCase());
+		}
+		return header.append(" ms (with --phases)").toString();
+	}
+	
+	private static String phases(long[] phaseTimes){
+		if (phaseTimes == null) return "-";
+		StringBuilder phases = new StringBuilder();
+		for (Phase phase : Phase.values()){
+			if (phases.length() > 0) phases.append('/');
+			phases.append(String.format("%.1f", phaseTimes[phase.ordinal() * 3] / 1e6));
+		}
+		return phases.toString();
+	}
+}
@@ -0,0 +1,166 @@
+package analysis;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+/**
+ * Reads a source file's bytes once and works out its encoding from them: a byte
+ * order mark if there is one, then the zero bytes that give away BOM-less UTF-16,
+ * then strict UTF-8. Anything that doesn't decode in the encoding found is read as
+ * ISO-8859-1, which can decode any byte, rather than being filled with replacement
+ * characters or dropped.
+ *
+ * Files are read into buffers kept per thread and reused for the next file, or
+ * memory-mapped when large. Pure ASCII and Latin-1 files are lexed straight from
+ * those bytes; everything else is decoded once into a pooled char buffer.
+ */
+class SourceReader {
+	/** Files bigger than this are memory-mapped rather than copied onto the heap */
+	private static final int MAP_THRESHOLD = 256 * 1024;
+	/** How many leading bytes are checked for the UTF-16 zero byte pattern */
+	private static final int UTF_16_SAMPLE = 512;
+	
+	private static final ThreadLocal<ByteBuffer[]> byteBuffers = ThreadLocal.withInitial(() -> new ByteBuffer[1]);
+	private static final ThreadLocal<CharBuffer[]> charBuffers = ThreadLocal.withInitial(() -> new CharBuffer[1]);
+	
+	/**
+	 * The file's characters, valid until this thread reads another file
+	 */
+	static BufferCharStream read(Path path) throws IOException {
+		return read(path, null);
+	}
+	
+	/**
+	 * Also feeds every byte of the file to digest, mark and all, so its hash
+	 * doesn't need a second read
+	 */
+	static BufferCharStream read(Path path, MessageDigest digest) throws IOException {
+		ScanEvents.FileRead event = new ScanEvents.FileRead();
+		event.begin();
+		ByteBuffer bytes = readBytes(path);
+		long size = bytes.remaining();
+		if (digest != null) digest.update(bytes.duplicate());
+		BufferCharStream source = characters(path.toString(), bytes);
+		event.end(path, size);
+		return source;
+	}
+	
+	private static BufferCharStream characters(String name, ByteBuffer bytes) throws IOException {
+		Charset charset = byteOrderMark(bytes);
+		if (charset == null) charset = utf16WithoutBom(bytes);
+		if (charset == null){
+			if (isAscii(bytes)) return BufferCharStream.of(name, bytes);
+			charset = StandardCharsets.UTF_8;
+		}
+		try {
+			return BufferCharStream.of(name, decode(bytes.duplicate(), charset));
+		} catch (CharacterCodingException e) {
+			// Even with a mark, a body that doesn't decode is read byte for byte after it
+			return BufferCharStream.of(name, bytes);
+		}
+	}
+	
+	private static ByteBuffer readBytes(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) throw new IOException("Too large to scan: " + path);
+			if (size > MAP_THRESHOLD) return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			ByteBuffer bytes = pooled(byteBuffers.get(), (int) size);
+			while (bytes.hasRemaining() && channel.read(bytes) >= 0);
+			bytes.flip();
+			return bytes;
+		}
+	}
+	
+	private static ByteBuffer pooled(ByteBuffer[] pool, int size){
+		if (pool[0] == null || pool[0].capacity() < size){
+			pool[0] = ByteBuffer.allocate(Math.max(size, 2 * (pool[0] == null ? 0 : pool[0].capacity())));
+		}
+		pool[0].clear();
+		pool[0].limit(size);
+		return pool[0];
+	}
+	
+	private static CharBuffer pooled(CharBuffer[] pool, int size){
+		if (pool[0] == null || pool[0].capacity() < size){
+			pool[0] = CharBuffer.allocate(Math.max(size, 2 * (pool[0] == null ? 0 : pool[0].capacity())));
+		}
+		pool[0].clear();
+		pool[0].limit(size);
+		return pool[0];
+	}
+	
+	private static boolean isAscii(ByteBuffer bytes){
+		for (int i = bytes.position(); i < bytes.limit(); i++){
+			if (bytes.get(i) < 0) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Skips past the mark when one is found
+	 */
+	private static Charset byteOrderMark(ByteBuffer bytes){
+		int b0 = byteAt(bytes, 0), b1 = byteAt(bytes, 1), b2 = byteAt(bytes, 2);
+		if (b0 == 0xEF && b1 == 0xBB && b2 == 0xBF){
+			bytes.position(3);
+			return StandardCharsets.UTF_8;
+		}
+		if (b0 == 0xFE && b1 == 0xFF){
+			bytes.position(2);
+			return StandardCharsets.UTF_16BE;
+		}
+		if (b0 == 0xFF && b1 == 0xFE){
+			bytes.position(2);
+			return StandardCharsets.UTF_16LE;
+		}
+		return null;
+	}
+	
+	/**
+	 * Java source is mostly ASCII, so UTF-16 without a mark shows up as a zero in
+	 * every other byte: first of each pair for big endian, second for little.
+	 */
+	private static Charset utf16WithoutBom(ByteBuffer bytes){
+		int length = Math.min(bytes.remaining(), UTF_16_SAMPLE) & ~1;
+		if (length == 0) return null;
+		int evenZeros = 0, oddZeros = 0;
+		for (int i = 0; i < length; i += 2){
+			if (byteAt(bytes, i) == 0) evenZeros++;
+			if (byteAt(bytes, i + 1) == 0) oddZeros++;
+		}
+		int pairs = length / 2;
+		if (evenZeros > pairs / 2 && oddZeros == 0) return StandardCharsets.UTF_16BE;
+		if (oddZeros > pairs / 2 && evenZeros == 0) return StandardCharsets.UTF_16LE;
+		return null;
+	}
+	
+	private static CharBuffer decode(ByteBuffer bytes, Charset charset) throws CharacterCodingException {
+		CharsetDecoder decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+		CharBuffer chars = pooled(charBuffers.get(), (int) Math.ceil(bytes.remaining() * (double) decoder.maxCharsPerByte()));
+		CoderResult result = decoder.decode(bytes, chars, true);
+		if (!result.isUnderflow()) result.throwException();
+		result = decoder.flush(chars);
+		if (!result.isUnderflow()) result.throwException();
+		chars.flip();
+		return chars;
+	}
+	
+	private static int byteAt(ByteBuffer bytes, int offset){
+		int index = bytes.position() + offset;
+		return index < bytes.limit() ? bytes.get(index) & 0xFF : -1;
+	}
+}
@@ -1,25 +1,25 @@
 package analysis;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
-import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
-import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.CharStream;
-import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ErrorNodeImpl;
 import org.antlr.v4.runtime.tree.ParseTree;
-import org.antlr.v4.runtime.tree.TerminalNodeImpl;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.antlr.v4.runtime.tree.TerminalNode;
 
-import antlr.JavaLexer;
+import antlr.JavaBaseListener;
 import antlr.JavaParser;
 import antlr.JavaParser.BlockContext;
 import antlr.JavaParser.BlockStatementContext;
@@ -29,7 +29,6 @@ import antlr.JavaParser.ConstructorBodyContext;
 import antlr.JavaParser.ConstructorDeclarationContext;
 import antlr.JavaParser.ExpressionContext;
 import antlr.JavaParser.ExpressionListContext;
-import antlr.JavaParser.FieldDeclarationContext;
 import antlr.JavaParser.LocalVariableDeclarationStatementContext;
 import antlr.JavaParser.MethodBodyContext;
 import antlr.JavaParser.MethodDeclarationContext;
@@ -47,97 +46,347 @@ public class Unit {
 	public FailureSet failureSet; 
 	public String className;
 	public boolean hasForwarding;
-	public List<ExpressionContext> delegationStatements = new ArrayList<ExpressionContext>();
+	/** Set when the file ran over its parse budget and was given up on, see {@link Quarantine} */
+	public boolean overBudget;
+	public List<Delegation> delegationStatements = new ArrayList<Delegation>();
+	/** What each {@link Phase} cost on this file, null unless phases are timed */
+	public long[] phaseTimes;
+	/** Tokens lexed and the time taken to read, lex and parse, bodies included, for {@link SlowFiles}. Not kept in the manifest */
+	public int tokenCount;
+	public long parseNanos;
+	/** Set while scanning a file that was read before the unit was made, see {@link #read} */
+	private BufferCharStream source;
 	
 	public static final Pattern forwarding =
 			Pattern.compile("[\\w<>]+\\s+(\\w+)\\s*\\(.*\\)\\s*\\{\\s*return\\s+\\w+(\\.\\w+)*\\.\\1\\(.*\\)\\s*;\\s*\\}");
 	
-	private static final List<String> classDeclKeywords = 
-			Arrays.asList("public", "private", "abstract", "protected", "static", "final", "strictfp", "class");
+	/** Files where the tree and regex forwarding checks disagreed, see {@link ForwardingDetection#COMPARE} */
+	public static final AtomicInteger forwardingMismatches = new AtomicInteger();
+	
+	/** Files where the skeleton and full parses gave different results, see {@link ParseMode#VERIFY} */
+	public static final AtomicInteger skeletonMismatches = new AtomicInteger();
+	
+	private static final ScanOptions defaults = new ScanOptions();
 	
 	public Unit(Path path){
-		System.out.println(path);
+		this(path, defaults);
+	}
+	
+	public Unit(Path path, ScanOptions options){
+		this(path, options, null);
+	}
+	
+	/**
+	 * Scans a file this thread has just read with {@link SourceReader}, rather
+	 * than reading it again, or reads it itself if source is null
+	 */
+	Unit(Path path, ScanOptions options, BufferCharStream source){
 		this.path = path;
-		if (path.toString().endsWith("sunflow/src/org/sunflow/math/PerlinScalar.java")){
+		this.source = source;
+		ParserContext context = ParserContext.get();
+		context.budget.reset(options.budgetMillis);
+		context.timer.start();
+		boolean compiled;
+		try {
+			compiled = scanFile(path, options);
+		} catch (Budget.Exceeded e) {
+			if (options.verbose) System.out.println(e.getMessage() + ", giving up on " + path);
+			overBudget = true;
 			compiled = false;
-			return;
 		}
-		CompilationUnitContext compilationUnit = getCompilationUnit(path);
-		System.out.println("ping");
-		this.compiled = compilationUnit != null;
-		if (!this.compiled) return;
-		this.failureSet = new FailureSet(path);
-		findClassnameAndExtension(compilationUnit);
-		scanClasses(compilationUnit);
+		this.compiled = compiled;
+		if (!compiled) this.failureSet = null;
+		this.phaseTimes = context.timer.finish();
+		this.source = null;
 	}
 	
-	private void findClassnameAndExtension(ParseTree tree) {
-		for (ParseTree c : childrenOf(tree)){
-			if (c instanceof ClassDeclarationContext){
-				ClassDeclarationContext classDecl = (ClassDeclarationContext) c;
-				for (ParseTree declWord : childrenOf(classDecl)){
-					if (classDeclKeywords.contains(declWord.getText().toLowerCase())) continue;
-					className = declWord.getText();
-					break;
-				}
-				for (int j=0; j<classDecl.getChildCount(); j++){
-					if (classDecl.getChild(j).getText().equals("extends")){
-						superClassName = classDecl.getChild(j+1).getText();
-						break;
-					}
-				}
+	Unit(Path path, boolean compiled){
+		this.path = path;
+		this.compiled = compiled;
+		if (compiled) this.failureSet = new FailureSet(path);
+	}
+	
+	/** Parses and scans the file, false if it couldn't be read or parsed */
+	private boolean scanFile(Path path, ScanOptions options){
+		ParseMode parseMode = options.parse;
+		ScanEvents.FileParse parseEvent = new ScanEvents.FileParse();
+		parseEvent.begin();
+		long parseStart = System.nanoTime();
+		if (parseMode == ParseMode.TOKENS){
+			tokenCount = scanTokens(path);
+			parseNanos = System.nanoTime() - parseStart;
+			parseEvent.end(path, parseMode, tokenCount, false);
+			if (tokenCount < 0) return false;
+			this.failureSet = new FailureSet(path);
+			return true;
+		}
+		ScanPlan plan = options.plan();
+		boolean regex = plan.forwarding && options.forwarding != ForwardingDetection.TREE;
+		boolean full = parseMode == ParseMode.FULL;
+		ParserContext context = ParserContext.get();
+		BufferCharStream source = null;
+		Skeleton skeleton = null;
+		CompilationUnitContext compilationUnit = null;
+		try {
+			source = read(path, regex);
+			if (source != null){
+				skeleton = full ? null : getSkeleton(source);
+				compilationUnit = full
+						? getCompilationUnit(source)
+						: skeleton == null ? null : skeleton.tree;
 			}
-			else findClassnameAndExtension(c);
+		} finally {
+			// Also recorded for files that ran over their budget, the ones most worth seeing.
+			// The context still has the last file's tokens if this one was never read
+			tokenCount = source == null ? 0 : context.tokens.size();
+			parseNanos = System.nanoTime() - parseStart;
+			parseEvent.end(path, parseMode, tokenCount, compilationUnit != null);
+		}
+		if (compilationUnit == null) return false;
+		this.failureSet = new FailureSet(path);
+		ScanEvents.FileScan scanEvent = new ScanEvents.FileScan();
+		scanEvent.begin();
+		Phase previous = context.timer.enter(Phase.SCAN);
+		// Skeletons parse their bodies while they are scanned, and VERIFY parses the whole file again
+		long parsedBefore = context.parseNanos;
+		try {
+			if (skeleton == null) scan(compilationUnit, null, options.forwarding, plan);
+			else scanSkeleton(skeleton, options, plan);
+		} finally {
+			parseNanos += context.parseNanos - parsedBefore;
 		}
+		context.timer.exit(previous);
+		scanEvent.end(this);
+		return true;
 	}
-
-	public void scanClasses(ParseTree tree){
-		for (ParseTree c : childrenOf(tree)){
-			if (c instanceof ClassDeclarationContext){
-				classCount++;
-				ClassDeclarationContext classDecl = (ClassDeclarationContext) c;
-				scanSubDeclarations(classDecl);
-			}
-			else scanClasses(c);
+	
+	public void write(DataOutput out) throws IOException {
+		BinaryFormat.writeString(out, path.toString());
+		out.writeBoolean(compiled);
+		if (!compiled) return;
+		out.writeInt(classCount);
+		BinaryFormat.writeString(out, className);
+		BinaryFormat.writeString(out, superClassName);
+		out.writeBoolean(hasForwarding);
+		out.writeInt(failureSet.failures.size());
+		for (Failure failure : failureSet.failures) failure.write(out);
+		out.writeInt(delegationStatements.size());
+		for (Delegation delegation : delegationStatements) delegation.write(out);
+	}
+	
+	/**
+	 * Reads back a unit stored with {@link #write}, without touching the source file
+	 */
+	public static Unit read(DataInput in) throws IOException {
+		Unit unit = new Unit(Paths.get(BinaryFormat.readString(in)), in.readBoolean());
+		if (!unit.compiled) return unit;
+		unit.classCount = in.readInt();
+		unit.className = BinaryFormat.readString(in);
+		unit.superClassName = BinaryFormat.readString(in);
+		unit.hasForwarding = in.readBoolean();
+		for (int i = in.readInt(); i > 0; i--) unit.failureSet.add(Failure.read(in));
+		for (int i = in.readInt(); i > 0; i--) unit.delegationStatements.add(Delegation.read(in));
+		return unit;
+	}
+	
+	/**
+	 * Everything that is worked out from the parse tree alone, in a single walk
+	 */
+	void scan(CompilationUnitContext compilationUnit, ForwardingDetection forwardingDetection){
+		scan(compilationUnit, null, forwardingDetection, ScanPlan.ALL);
+	}
+	
+	/**
+	 * Scans a skeleton, parsing its bodies as the walk gets to them. If one doesn't
+	 * parse on its own the scan starts over on the whole file. When verifying, the
+	 * whole file is scanned as well and its results are the ones kept.
+	 */
+	private void scanSkeleton(Skeleton skeleton, ScanOptions options, ScanPlan plan){
+		boolean regexForwarding = hasForwarding;
+		try {
+			scan(skeleton.tree, skeleton, options.forwarding, plan);
+		} catch (ParseCancellationException e) {
+			clearResults(regexForwarding);
+			scan(skeleton.full(), null, options.forwarding, plan);
+			return;
 		}
+		if (options.parse != ParseMode.VERIFY) return;
+		
+		Unit full = new Unit(path, true);
+		full.hasForwarding = regexForwarding;
+		// Forwarding mismatches were already counted by the skeleton scan
+		full.scan(skeleton.full(), null, options.forwarding == ForwardingDetection.COMPARE ? ForwardingDetection.TREE : options.forwarding, plan);
+		if (!sameResults(full)){
+			skeletonMismatches.incrementAndGet();
+			System.out.println("Skeleton mismatch in " + path);
+		}
+		classCount = full.classCount;
+		className = full.className;
+		superClassName = full.superClassName;
+		hasForwarding = full.hasForwarding;
+		failureSet = full.failureSet;
+		delegationStatements = full.delegationStatements;
 	}
-
+	
+	private boolean sameResults(Unit other){
+		return classCount == other.classCount
+				&& Objects.equals(className, other.className)
+				&& Objects.equals(superClassName, other.superClassName)
+				&& hasForwarding == other.hasForwarding
+				&& failureSet.failures.equals(other.failureSet.failures)
+				&& delegationStatements.equals(other.delegationStatements);
+	}
+	
+	private void clearResults(boolean regexForwarding){
+		classCount = 0;
+		className = null;
+		superClassName = null;
+		hasForwarding = regexForwarding;
+		failureSet = new FailureSet(path);
+		delegationStatements = new ArrayList<Delegation>();
+	}
+	
+	private void scan(CompilationUnitContext compilationUnit, Skeleton skeleton, ForwardingDetection forwardingDetection, ScanPlan plan){
+		boolean treeForwarding = plan.forwarding && forwardingDetection != ForwardingDetection.REGEX;
+		TreeScanner scanner = new TreeScanner(skeleton, plan, treeForwarding);
+		ParseTreeWalker.DEFAULT.walk(scanner, compilationUnit);
+		if (!treeForwarding) return;
+		
+		if (forwardingDetection == ForwardingDetection.COMPARE && scanner.forwarding != hasForwarding){
+			forwardingMismatches.incrementAndGet();
+			System.out.println("Forwarding mismatch: tree=" + scanner.forwarding + " regex=" + hasForwarding + " in " + path);
+		}
+		hasForwarding = scanner.forwarding;
+	}
+	
 	/**
-	 * Go through all sub-class-declarations -> methods, constructors and fields
+	 * Visits every node once. Only outermost classes are counted and named, the last
+	 * one in the file giving the unit its name and superclass, while methods and
+	 * constructors are scanned anywhere inside a class, nested ones included. Any
+	 * method in the file can make it forwarding. Stages the plan leaves out are
+	 * skipped, and scanning a skeleton, only the bodies the rest need are parsed.
 	 */
-	public void scanSubDeclarations(ParseTree tree){
-		for (ParseTree c : childrenOf(tree)){
-			if (c instanceof MethodDeclarationContext){
-				MethodDeclarationContext methodDecl = (MethodDeclarationContext) c;
-				scanMthdStatements(methodDecl);
-			} else if (c instanceof ConstructorDeclarationContext){
-				ConstructorDeclarationContext ctorDecl = (ConstructorDeclarationContext) c;
-				scanCtorStatements(ctorDecl);
-			} else if (c instanceof FieldDeclarationContext){
-				// Field decl is safe
+	private class TreeScanner extends JavaBaseListener {
+		private final Skeleton skeleton;
+		private final ScanPlan plan;
+		private final boolean checkForwarding;
+		private int classDepth = 0;
+		boolean forwarding = false;
+		
+		TreeScanner(Skeleton skeleton, ScanPlan plan, boolean checkForwarding){
+			this.skeleton = skeleton;
+			this.plan = plan;
+			this.checkForwarding = checkForwarding;
+		}
+		
+		@Override
+		public void enterClassDeclaration(ClassDeclarationContext ctx) {
+			if (classDepth++ > 0) return;
+			classCount++;
+			findClassnameAndExtension(ctx);
+		}
+		
+		@Override
+		public void exitClassDeclaration(ClassDeclarationContext ctx) {
+			classDepth--;
+		}
+		
+		@Override
+		public void enterMethodDeclaration(MethodDeclarationContext ctx) {
+			boolean scanBody = classDepth > 0 && plan.methodBodies;
+			if (skeleton != null) skeleton.expand(ctx, (checkForwarding && !forwarding) || scanBody);
+			if (checkForwarding && !forwarding) forwarding = isForwarding(ctx);
+			if (scanBody) scanMthdStatements(ctx);
+		}
+		
+		@Override
+		public void enterConstructorDeclaration(ConstructorDeclarationContext ctx) {
+			boolean scanBody = classDepth > 0 && plan.constructors;
+			if (skeleton != null) skeleton.expand(ctx, scanBody);
+			if (scanBody) scanCtorStatements(ctx);
+		}
+	}
+	
+	/**
+	 * A method whose body is just return recv.sameName(args); where recv is a
+	 * name like a, this.a or a.b.c
+	 */
+	private static boolean isForwarding(MethodDeclarationContext method){
+		MethodBodyContext body = method.methodBody();
+		if (body == null || method.Identifier() == null) return false;
+		BlockContext block = body.block();
+		if (block == null || block.blockStatement().size() != 1) return false;
+		StatementContext stmt = block.blockStatement(0).statement();
+		// [return][expression][;]
+		if (stmt == null || stmt.getChildCount() != 3 || !isToken(stmt.getChild(0), JavaParser.RETURN)) return false;
+		ExpressionContext call = stmt.expression(0);
+		// [callee][(][parameters][)] or [callee][(][)]
+		if (call == null || call.getChildCount() < 3 || !isToken(call.getChild(1), JavaParser.LPAREN)) return false;
+		ExpressionContext callee = call.expression(0);
+		// [receiver][.][name]
+		if (callee == null || callee.getChildCount() != 3 || !isToken(callee.getChild(1), JavaParser.DOT)
+				|| !isToken(callee.getChild(2), JavaParser.Identifier)) return false;
+		if (!callee.getChild(2).getText().equals(method.Identifier().getText())) return false;
+		return isName(callee.expression(0));
+	}
+	
+	private static boolean isName(ExpressionContext expr){
+		while (expr != null && expr.getChildCount() == 3
+				&& isToken(expr.getChild(1), JavaParser.DOT) && isToken(expr.getChild(2), JavaParser.Identifier)){
+			expr = expr.expression(0);
+		}
+		if (expr == null || expr.getChildCount() != 1 || expr.primary() == null) return false;
+		ParseTree primary = expr.primary();
+		return primary.getChildCount() == 1 && (isToken(primary.getChild(0), JavaParser.Identifier)
+				|| isToken(primary.getChild(0), JavaParser.THIS) || isToken(primary.getChild(0), JavaParser.SUPER));
+	}
+	
+	/**
+	 * Tokens made up by error recovery have no index and don't count, their text
+	 * is a placeholder rather than the token's
+	 */
+	private static boolean isToken(ParseTree tree, int tokenType){
+		if (!(tree instanceof TerminalNode)) return false;
+		Token token = ((TerminalNode) tree).getSymbol();
+		return token.getType() == tokenType && token.getTokenIndex() >= 0;
+	}
+	
+	/** Whether tree is just the one token, possibly wrapped in rules with a single child */
+	private static boolean isSingleToken(ParseTree tree, int tokenType){
+		while (!(tree instanceof TerminalNode) && tree.getChildCount() == 1) tree = tree.getChild(0);
+		return isToken(tree, tokenType);
+	}
+	
+	private void findClassnameAndExtension(ClassDeclarationContext classDecl) {
+		if (classDecl.Identifier() != null) className = classDecl.Identifier().getText();
+		for (int j=0; j<classDecl.getChildCount(); j++){
+			if (isToken(classDecl.getChild(j), JavaParser.EXTENDS)){
+				superClassName = classDecl.getChild(j+1).getText();
+				break;
 			}
-			scanSubDeclarations(c);
 		}
 	}
 
 	private void scanMthdStatements(MethodDeclarationContext tree) {
-		for (ParseTree c : childrenOf(tree)){
-			if (c instanceof MethodBodyContext){
-				MethodBodyContext mthdBody = (MethodBodyContext) c;
-				for (BlockStatementContext stmt : getStatements(mthdBody)){
-					scanMthdExpressions(stmt);
+		for (int i = 0; i < tree.getChildCount(); i++){
+			if (!(tree.getChild(i) instanceof MethodBodyContext)) continue;
+			BlockContext block = getBlock(tree.getChild(i));
+			for (int j = 0; j < block.getChildCount(); j++){
+				if (block.getChild(j) instanceof BlockStatementContext){
+					scanMthdExpressions((BlockStatementContext) block.getChild(j));
 				}
 			}
 		}
 	}
 
-	private void scanMthdExpressions(BlockStatementContext tree) {
-		delegationStatements
-			.addAll(getExpressions(tree)
-				.stream()
-				.filter(this::mthdExpressionIsDelegation)
-				.collect(Collectors.toList())
-			);
+	private void scanMthdExpressions(BlockStatementContext stmt) {
+		ParseTree holder = getExpressionHolder(stmt);
+		if (holder == null) return;
+		for (int i = 0; i < holder.getChildCount(); i++){
+			if (!(holder.getChild(i) instanceof StatementExpressionContext)) continue;
+			ExpressionContext expr = (ExpressionContext) holder.getChild(i).getChild(0);
+			if (mthdExpressionIsDelegation(expr)) delegationStatements.add(new Delegation(expr));
+		}
 	}
 
 	private boolean mthdExpressionIsDelegation(ExpressionContext expr) {
@@ -145,7 +394,7 @@ public class Unit {
 			return mthdExpressionIsDelegation((ExpressionContext)expr.getChild(2)); //look at rhs of assignment
 		}
 		else if (expr.getChildCount() == 4
-				&& expr.getChild(0).getText().equals("(")
+				&& isToken(expr.getChild(0), JavaParser.LPAREN)
 				&& expr.getChild(1) instanceof TypeContext){
 			return mthdExpressionIsDelegation((ExpressionContext)expr.getChild(3)); //look at rhs of cast
 		}
@@ -156,16 +405,19 @@ public class Unit {
 			if (identifier.getChildCount() <= 1) {
 				return false; //can't be calling another class with one or fewer identifier components
 			}
-			if (identifier.getChildCount() <= 3 && identifier.getChild(0).getText().equals("this")) { 
+			if (identifier.getChildCount() <= 3 && isSingleToken(identifier.getChild(0), JavaParser.THIS)) { 
 				return false; //calling method on this is fine
 			}
 			if (expr.getChild(2) instanceof ExpressionListContext){
 				ExpressionListContext params = (ExpressionListContext)expr.getChild(2);
-				return params.children.stream().anyMatch(p -> p.getText().equals("this"));
+				for (int i = 0; i < params.getChildCount(); i++){
+					if (isSingleToken(params.getChild(i), JavaParser.THIS)) return true;
+				}
+				return false;
 			}
 			else if (expr.getChild(2) instanceof ExpressionContext){
 				ExpressionContext params = (ExpressionContext)expr.getChild(2);
-				return params.getText().equals("this");
+				return isSingleToken(params, JavaParser.THIS);
 			}
 			return false;
 		}
@@ -173,21 +425,26 @@ public class Unit {
 	}
 
 	private void scanCtorStatements(ConstructorDeclarationContext tree) {
-		for (ParseTree c : childrenOf(tree)){
-			if (c instanceof ConstructorBodyContext){
-				ConstructorBodyContext ctorBody = (ConstructorBodyContext) c;
-				for (BlockStatementContext stmt : getStatements(ctorBody)){
-					scanCtorExpressions(stmt);
+		for (int i = 0; i < tree.getChildCount(); i++){
+			if (!(tree.getChild(i) instanceof ConstructorBodyContext)) continue;
+			BlockContext block = getBlock(tree.getChild(i));
+			for (int j = 0; j < block.getChildCount(); j++){
+				if (block.getChild(j) instanceof BlockStatementContext){
+					scanCtorExpressions((BlockStatementContext) block.getChild(j));
 				}
 			}
 		}
 	}
 
 	private void scanCtorExpressions(BlockStatementContext stmt) {
-		for (ExpressionContext expr : getExpressions((BlockStatementContext)stmt)){
+		ParseTree holder = getExpressionHolder(stmt);
+		if (holder == null) return;
+		for (int i = 0; i < holder.getChildCount(); i++){
+			if (!(holder.getChild(i) instanceof StatementExpressionContext)) continue;
+			ExpressionContext expr = (ExpressionContext) holder.getChild(i).getChild(0);
 			if (isAssignment(expr)){
 				ExpressionContext rhs = (ExpressionContext) expr.getChild(2);
-				if(rhs.getText().equals("this") || isMethodCallPassingThis(rhs)){
+				if(isSingleToken(rhs, JavaParser.THIS) || isMethodCallPassingThis(rhs)){
 					failureSet.add(new Failure(expr, FailureType.STORING_THIS));
 				} else if (isDownCall(rhs)){
 					failureSet.add(new Failure(expr, FailureType.DOWN_CALL));
@@ -205,13 +462,13 @@ public class Unit {
 	private boolean isMethodCallPassingThis(ExpressionContext expr) {
 		boolean inParams = false;
 		for (int i = 0; i < expr.getChildCount(); i++){
-			if (expr.getChild(i).getText().equals("(")){
+			if (isToken(expr.getChild(i), JavaParser.LPAREN)){
 				inParams = true;
 				continue;
 			}
 			if (!inParams) continue;
-			if (expr.getChild(i).getText().equals(")")) return false;
-			if (expr.getChild(i).getText().equals("this")) return true;
+			if (isToken(expr.getChild(i), JavaParser.RPAREN)) return false;
+			if (isSingleToken(expr.getChild(i), JavaParser.THIS)) return true;
 		}
 		return false;
 	}
@@ -219,115 +476,113 @@ public class Unit {
 	private boolean isDownCall(ExpressionContext expr) {
 		if (expr.getChildCount() >= 2){
 			// [notSuper][(]
-			return !expr.getChild(0).getText().equals("super") &&
-					!expr.getChild(0).getText().equals("this") &&
+			return !isSingleToken(expr.getChild(0), JavaParser.SUPER) &&
+					!isSingleToken(expr.getChild(0), JavaParser.THIS) &&
 					expr.getChild(0).getChildCount() == 1 &&
-					expr.getChild(1).getText().equals("(");
+					isToken(expr.getChild(1), JavaParser.LPAREN);
 		}
 		if (expr.getChildCount() >= 5){
 			// [this][.][anything][(]
-			return expr.getChild(0).getText().equals("this") &&
-					expr.getChild(3).getText().equals("(");
+			return isSingleToken(expr.getChild(0), JavaParser.THIS) &&
+					isToken(expr.getChild(3), JavaParser.LPAREN);
 		}
 		return false;
 	}
 	
 	private boolean isAssignment(ExpressionContext expr) {
-		return expr.getChildCount() > 1
-				&& expr.getChild(1) instanceof TerminalNodeImpl
-				&& ((TerminalNodeImpl)expr.getChild(1)).symbol.getText().equals("=");
+		return expr.getChildCount() > 1 && isToken(expr.getChild(1), JavaParser.ASSIGN);
 	}
 
-	private List<BlockStatementContext> getStatements(ParseTree tree){
-		if (tree.getChildCount() >= 1 && tree.getChild(0) instanceof BlockContext){
-			return getStatements(tree.getChild(0));
+	private static BlockContext getBlock(ParseTree tree){
+		while (!(tree instanceof BlockContext)){
+			if (tree.getChildCount() == 0 || !(tree.getChild(0) instanceof BlockContext)) throw new RuntimeException("Block context not found");
+			tree = tree.getChild(0);
 		}
-		if (!(tree instanceof BlockContext)) throw new RuntimeException("Block context not found");
-		return ((BlockContext) tree)
-				.children
-				.stream()
-				.filter(x -> x instanceof BlockStatementContext)
-				.map(x -> (BlockStatementContext)x)
-				.collect(Collectors.toList());
+		return (BlockContext) tree;
 	}
 	
-	private List<ExpressionContext> getExpressions(BlockStatementContext stmt){
+	/**
+	 * The node whose StatementExpression children are the expressions of a block
+	 * statement, or null if it can't have any
+	 */
+	private static ParseTree getExpressionHolder(BlockStatementContext stmt){
 		ParseTree c = stmt.getChild(0);
-		if (c instanceof LocalVariableDeclarationStatementContext){
-			return ((LocalVariableDeclarationStatementContext)c)
-				.children
-				.stream()
-				.filter(x -> x instanceof StatementExpressionContext)
-				.map(x -> (ExpressionContext)x.getChild(0))
-				.collect(Collectors.toList());
-		}
-		else if (c instanceof TypeDeclarationContext){
-			TypeDeclarationContext tdc = (TypeDeclarationContext)c;
-			if (tdc.children == null) return new ArrayList<ExpressionContext>();
-			else return ((TypeDeclarationContext)c)
-				.children
-				.stream()
-				.filter(x -> x instanceof StatementExpressionContext)
-				.map(x -> (ExpressionContext)x.getChild(0))
-				.collect(Collectors.toList());
-		}
-		else if (c instanceof StatementContext){
-			StatementContext sc = (StatementContext)c;
-			if (sc.children == null) return new ArrayList<ExpressionContext>();
-			return ((StatementContext)c)
-				.children
-				.stream()
-				.filter(x -> x instanceof StatementExpressionContext)
-				.map(x -> (ExpressionContext)x.getChild(0))
-				.collect(Collectors.toList());
+		if (c instanceof LocalVariableDeclarationStatementContext
+				|| c instanceof TypeDeclarationContext
+				|| c instanceof StatementContext){
+			return c;
 		}
-		return new ArrayList<ExpressionContext>();
-	}
-	
-	private List<ParseTree> childrenOf(ParseTree tree){
-		return IntStream
-			.range(0, tree.getChildCount())
-			.mapToObj(i -> tree.getChild(i))
-			.collect(Collectors.toList());
+		return null;
 	}
 
-	private CompilationUnitContext getCompilationUnit(Path path) {
+	private CompilationUnitContext getCompilationUnit(CharStream source) {
 		try {
-			String wholeFile = readFile(path);
-			if (wholeFile == null) return null;
-			hasForwarding = forwarding.matcher(wholeFile).find();
-			
-			CharStream in = new ANTLRInputStream(wholeFile);
-		    JavaLexer lexer = new JavaLexer(in);
-		    lexer.removeErrorListeners();
-		    CommonTokenStream tokens = new CommonTokenStream(lexer);
-		    JavaParser parser = new JavaParser(tokens);
-		    parser.removeErrorListeners();
-		    return parser.compilationUnit();
+			return parse(source);
+		} catch (Budget.Exceeded e) {
+			throw e;
 		} catch (Exception e) {
 //			e.printStackTrace();
 			return null;//throw new RuntimeException("Could not read file");
 		}
 	}
 	
-	private String readFile(Path path){
-		List<Charset> charsetsToTry = Arrays.asList(StandardCharsets.UTF_8, StandardCharsets.UTF_16,
-				StandardCharsets.UTF_16BE, StandardCharsets.UTF_16LE, StandardCharsets.US_ASCII);
-		
-		for (Charset charset : charsetsToTry){
-			String file = tryReadFile(path, charset);
-			if (file != null) return file;
+	private Skeleton getSkeleton(CharStream source) {
+		try {
+			ParserContext context = ParserContext.get();
+			// Stripping the bodies counts as parsing, the lexing it starts with is timed on its own
+			Phase previous = context.timer.enter(Phase.PARSE);
+			Skeleton skeleton = Skeleton.parse(context, source);
+			context.timer.exit(previous);
+			return skeleton;
+		} catch (Budget.Exceeded e) {
+			throw e;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+	
+	/** The number of tokens in the file, or -1 if it couldn't be read */
+	private int scanTokens(Path path) {
+		try {
+			ParserContext context = ParserContext.get();
+			CharStream source = read(path, false);
+			if (source == null) return -1;
+			// Tokens are counted as they come, so this is mostly lexing
+			context.timer.enter(Phase.LEX);
+			return QuickStats.scan(context.lexer(source), this);
+		} catch (Budget.Exceeded e) {
+			throw e;
+		} catch (Exception e) {
+			return -1;
 		}
-		return null;
 	}
 	
-	private String tryReadFile(Path path, Charset encoding){
+	/** The file's characters, or null if it couldn't be read */
+	private BufferCharStream read(Path path, boolean regex) {
+		ParserContext context = ParserContext.get();
+		PhaseTimer timer = context.timer;
+		Phase previous = timer.enter(Phase.READ);
+		BufferCharStream source;
 		try {
-			byte[] encoded = Files.readAllBytes(path);
-			return new String(encoded, encoding);
-		} 
-		catch (IOException e) {
+			source = this.source != null ? this.source : SourceReader.read(path);
+		} catch (IOException e) {
+			timer.exit(previous);
 			return null;
 		}
+		context.budget.start();
+		try {
+			if (regex){
+				timer.enter(Phase.REGEX);
+				hasForwarding = forwarding.matcher(context.budget.checked(source)).find();
+			}
+		} finally {
+			timer.exit(previous);
+		}
+		return source;
+	}
+	
+	/** Parses with the calling thread's reusable {@link ParserContext} */
+	static CompilationUnitContext parse(CharStream in){
+		return ParserContext.get().parse(in);
 	}
 }